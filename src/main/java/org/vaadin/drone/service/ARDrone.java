@@ -1,9 +1,14 @@
 package org.vaadin.drone.service;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.DatagramPacket;
 import java.net.DatagramSocket;
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
 import java.net.UnknownHostException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
@@ -11,7 +16,10 @@ import java.nio.FloatBuffer;
 import java.nio.IntBuffer;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 import java.util.StringTokenizer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -25,6 +33,20 @@ public final class ARDrone {
     private final int MAX_PACKET_SIZE = 4096;
     private final int TIMEOUT_COMMAND = 3000;
     private final int TIMEOUT_NAVDATA = 3000;
+    private final int TIMEOUT_CONFIG = 1000;
+    private final int CONFIG_MAX_AGE = 60000;
+    private final int CONFIG_RETRY = 10000;
+
+    public static final String CONFIG_ALTITUDE_MAX = "control:altitude_max";
+    public static final String CONFIG_NAVDATA_DEMO = "general:navdata_demo";
+    public static final String CONFIG_NAVDATA_OPTIONS = "general:navdata_options";
+    private static final String FAILSAFE_ALTITUDE_MAX = "2000";
+    private final int INIT_BURST = 3;
+    private final int INIT_BURST_SPACING = 10;
+    private final int CLOCK_WINDOW = 10000;
+    private final int CLOCK_MAX_RATE = 250;
+
+    private static final Logger LOG = Logger.getLogger(ARDrone.class.getName());
 
     /* Command sequence */
     private long sequence = 0;
@@ -36,18 +58,41 @@ public final class ARDrone {
     private final String ip;
     private final int comPort;
     private final int navPort;
+    private final int ctrlPort;
     private final InetAddress inetAddr;
     private final DatagramSocket comSocket;
     private final DatagramSocket navSocket;
     private final Buffer commBuf;
-    private boolean running = false;
+    private volatile boolean running = false;
     private final List<DroneStateCallback> stateCallbacks = new ArrayList<>();
+    private final List<DroneStateCallback> packetCallbacks = new ArrayList<>();
+    private final List<LinkListener> linkListeners = new CopyOnWriteArrayList<>();
+    private final List<StateBitListener> stateBitListeners = new CopyOnWriteArrayList<>();
+    /* Previous state bits, used in the navdata thread only */
+    private int lastStateBits;
+    private boolean stateBitsKnown;
+    private volatile Boolean navdataDemo;
+    private volatile Integer navdataOptions;
+    /* Option tags parsed from navdata */
+    private volatile int parseMask = -1;
     private long navdataInterval = 1000;
+    private final DroneConfig config = new DroneConfig();
+    private final Object configLock = new Object();
+    private volatile long lastConfigFetch;
+    private final ConfigQueue configQueue;
+    private final ClockOffsetEstimator clock = new ClockOffsetEstimator(CLOCK_WINDOW, CLOCK_MAX_RATE);
+    private final CommandSender commandSender;
+    private final Object wireLock = new Object();
 
     public ARDrone(String ip, int comPort, int navPort) throws IOException {
+        this(ip, comPort, navPort, 5559);
+    }
+
+    public ARDrone(String ip, int comPort, int navPort, int ctrlPort) throws IOException {
         this.ip = ip;
         this.comPort = comPort;
         this.navPort = navPort;
+        this.ctrlPort = ctrlPort;
 
         inetAddr = parseIPAddress(ip);
         comSocket = new DatagramSocket();
@@ -58,9 +103,30 @@ public final class ARDrone {
 
         commBuf = new Buffer(4);
 
+        commandSender = new CommandSender(this::sendAt);
+        configQueue = new ConfigQueue(this::sendConfig,
+                () -> sendInternalCommand(InternalCommand.ACK_CONTROL),
+                new ConfigQueue.Cache() {
+                    @Override
+                    public String get(String key) {
+                        return getConfig().get(key);
+                    }
+
+                    @Override
+                    public void put(String key, String value) {
+                        config.put(key, value);
+                    }
+
+                    @Override
+                    public void remove(String key) {
+                        config.remove(key);
+                    }
+                });
+        addPacketCallback(configQueue);
+
         // Create a buffer for conversion
-        // Failsafe: Default max altitude to 2m
-        sendInternalCommand(InternalCommand.MAX_ALTITUDE, 2000);
+        // Failsafe: Default max altitude to 2m, always sent regardless of the cache
+        sendConfig(CONFIG_ALTITUDE_MAX, FAILSAFE_ALTITUDE_MAX);
         sendInternalCommand(InternalCommand.RESET_EMERGENCY);
 
     }
@@ -118,68 +184,357 @@ public final class ARDrone {
         this.running = false;
     }
 
+    /**
+     * Stop navdata, the command and configuration threads and close the
+     * sockets. The instance cannot be used after this.
+     */
+    public void close() {
+        stopNavData();
+        commandSender.close();
+        configQueue.close();
+        navSocket.close();
+        comSocket.close();
+    }
+
     private void navDataLoop() throws Exception {
         Logger.getLogger(ARDrone.class.getName()).log(Level.INFO, "Starting navdata receiver");
 
         //  initiate the communication
         sendInitPacket(navSocket, inetAddr, navPort);
 
+        LinkSupervisor link = new LinkSupervisor();
+        boolean connected = false;
+        int soTimeout = TIMEOUT_NAVDATA;
         long lastReportTime = System.currentTimeMillis();
         while (isRunning()) {
             long timeNow = System.currentTimeMillis();
             try {
+                int timeout = (int) link.getTimeout();
+                if (timeout != soTimeout) {
+                    navSocket.setSoTimeout(timeout);
+                    soTimeout = timeout;
+                }
                 NavData currentState = readNavdata(navSocket,
                         MAX_PACKET_SIZE);
-                if (timeNow - lastReportTime > this.getNavdataInterval()) {
-                    Logger.getLogger(ARDrone.class.getName()).log(Level.FINEST, currentState.toString());
+                long receiveTime = currentState.getReceiveTime();
+                long outage = link.onPacket(receiveTime);
+                if (outage >= 0) {
+                    linkUp(outage, connected);
+                    connected = true;
+                }
+                DroneEvents.CallbackDispatch dispatch = new DroneEvents.CallbackDispatch();
+                dispatch.begin();
+                packetCallbacks.forEach(cb -> cb.onDroneStateChanged(currentState));
+                diffStateBits(currentState, receiveTime);
+                int callbacks = packetCallbacks.size();
+                boolean throttled = timeNow - lastReportTime > this.getNavdataInterval();
+                if (throttled) {
+                    if (LOG.isLoggable(Level.FINEST)) {
+                        LOG.log(Level.FINEST, currentState.toString());
+                    }
                     stateCallbacks.forEach(cb -> cb.onDroneStateChanged(currentState));
+                    callbacks += stateCallbacks.size();
                     lastReportTime = timeNow;
-                    Logger.getLogger(ARDrone.class.getName()).log(Level.FINEST, "Navdata update complete ");
+                    LOG.log(Level.FINEST, "Navdata update complete ");
+                }
+                dispatch.end();
+                if (dispatch.shouldCommit()) {
+                    dispatch.sequence = currentState.getSequenceNumber();
+                    dispatch.callbacks = callbacks;
+                    dispatch.throttled = throttled;
+                    dispatch.commit();
                 }
             } catch (java.lang.IllegalArgumentException e) {
-                Logger.getLogger(ARDrone.class.getName()).log(Level.FINEST, "Failed to parse: " + e.getMessage(), e);
+                if (LOG.isLoggable(Level.FINEST)) {
+                    LOG.log(Level.FINEST, "Failed to parse: " + e.getMessage(), e);
+                }
             } catch (java.net.SocketTimeoutException e) {
+                if (link.onTimeout(System.currentTimeMillis())) {
+                    linkDown(link.getDownSince());
+                }
                 Logger.getLogger(ARDrone.class.getName()).log(Level.FINEST, "Navdata connection reset");
-                sendInitPacket(navSocket, inetAddr, navPort);
+                sendInitBurst();
             } catch (Throwable t) {
-                Logger.getLogger(ARDrone.class.getName()).log(Level.SEVERE, "Message read failed", t);
+                if (isRunning()) {
+                    Logger.getLogger(ARDrone.class.getName()).log(Level.SEVERE, "Message read failed", t);
+                }
             }
         }
         Logger.getLogger(ARDrone.class.getName()).log(Level.INFO, "Stopped navdata receiver");
     }
 
+    /* Spaced so that one short loss burst on the link doesn't take them all */
+    private void sendInitBurst() throws IOException, InterruptedException {
+        for (int i = 0; i < INIT_BURST; i++) {
+            if (i > 0) {
+                Thread.sleep(INIT_BURST_SPACING);
+            }
+            sendInitPacket(navSocket, inetAddr, navPort);
+        }
+    }
+
+    private void linkDown(long lastPacketTime) {
+        Logger.getLogger(ARDrone.class.getName()).log(Level.WARNING, "Navdata link lost");
+        // The drone may restart while we don't hear from it
+        invalidateConfig();
+        clock.reset();
+        linkListeners.forEach(l -> l.onLinkDown(lastPacketTime));
+    }
+
+    private void linkUp(long outage, boolean reconnect) {
+        if (reconnect) {
+            Logger.getLogger(ARDrone.class.getName()).log(Level.INFO, "Navdata link up after " + outage + " ms");
+            replaySession();
+        }
+        linkListeners.forEach(l -> l.onLinkUp(outage));
+    }
+
+    /* One event per changed state bit */
+    private void diffStateBits(NavData d, long time) {
+        int bits = d.getStateBits();
+        boolean initial = !stateBitsKnown;
+        int changed = initial ? -1 : bits ^ lastStateBits;
+        lastStateBits = bits;
+        stateBitsKnown = true;
+        if (changed == 0 || stateBitListeners.isEmpty()) {
+            return;
+        }
+        while (changed != 0) {
+            int bit = Integer.numberOfTrailingZeros(changed);
+            changed &= changed - 1;
+            boolean value = (bits & (1 << bit)) != 0;
+            for (StateBitListener l : stateBitListeners) {
+                l.onStateBitChanged(bit, value, initial, d.getSequenceNumber(), time);
+            }
+        }
+    }
+
+    /* Restore the settings of this session after the link has been down */
+    private void replaySession() {
+        // The failsafe is sent even if the cache says it is set
+        configQueue.submit(CONFIG_ALTITUDE_MAX, FAILSAFE_ALTITUDE_MAX, true);
+        Boolean demo = navdataDemo;
+        Integer options = navdataOptions;
+        if (demo != null && options != null) {
+            cmdNavData(demo, options);
+        } else if (demo != null) {
+            cmdNavData(demo);
+        }
+    }
+
     private NavData readNavdata(DatagramSocket datagramSocket,
             int maxPacketSize) throws IOException {
 
         DatagramPacket packet = new DatagramPacket(new byte[maxPacketSize],
                 maxPacketSize);
+        DroneEvents.NavdataReceive receive = new DroneEvents.NavdataReceive();
+        receive.begin();
         datagramSocket.receive(packet);
-        NavData droneState = NavData.create(packet);
+        long receiveNanos = System.nanoTime();
+        receive.size = packet.getLength();
+        receive.commit();
+
+        DroneEvents.NavdataDecode decode = new DroneEvents.NavdataDecode();
+        decode.begin();
+        NavData droneState = NavData.create(packet, parseMask);
+        decode.end();
+        if (decode.shouldCommit()) {
+            decode.sequence = droneState.getSequenceNumber();
+            decode.size = packet.getLength();
+            decode.commit();
+        }
+        droneState.setReceiveTime(System.currentTimeMillis(), receiveNanos);
+        if (droneState.getDroneTime() >= 0) {
+            clock.add(droneState.getDroneTime(), receiveNanos);
+        }
         return droneState;
     }
 
     public void cmdTakeoff() throws IOException {
-        sendInternalCommand(InternalCommand.TAKEOFF);
+        cmdTakeoff(System.nanoTime());
     }
 
     public void cmdLand() throws IOException {
-        sendInternalCommand(InternalCommand.LAND);
+        cmdLand(System.nanoTime());
     }
 
-    public void cmdBlink(int seconds) throws IOException {
-        sendInternalCommand(InternalCommand.INIT_BLINK, seconds);
+    public void cmdReset() throws IOException {
+        cmdReset(System.nanoTime());
     }
 
-    public void cmdReset() throws IOException {
-        sendInternalCommand(InternalCommand.RESET_EMERGENCY);
+    /**
+     * Take off. Queued like other commands.
+     *
+     * @param arrivalNanos System.nanoTime() when the request was received.
+     * @throws IOException
+     */
+    public void cmdTakeoff(long arrivalNanos) throws IOException {
+        queueInternalCommand(InternalCommand.TAKEOFF, arrivalNanos);
+    }
+
+    /**
+     * Land. Sent ahead of any queued commands.
+     *
+     * @param arrivalNanos System.nanoTime() when the request was received.
+     * @throws IOException
+     */
+    public void cmdLand(long arrivalNanos) throws IOException {
+        queueInternalCommand(InternalCommand.LAND, arrivalNanos);
+    }
+
+    /**
+     * Reset emergency state. Sent ahead of any queued commands.
+     *
+     * @param arrivalNanos System.nanoTime() when the request was received.
+     * @throws IOException
+     */
+    public void cmdReset(long arrivalNanos) throws IOException {
+        queueInternalCommand(InternalCommand.RESET_EMERGENCY, arrivalNanos);
+    }
+
+    public void cmdBlink(int seconds) throws IOException {
+        queueInternalCommand(InternalCommand.INIT_BLINK, System.nanoTime(), seconds);
     }
 
     public void cmdTrim() throws IOException {
-        sendInternalCommand(InternalCommand.TRIM);
+        queueInternalCommand(InternalCommand.TRIM, System.nanoTime());
+    }
+
+    public CompletableFuture<Boolean> cmdNavData(boolean demoMode) {
+        navdataDemo = demoMode;
+        navdataOptions = null;
+        parseMask = -1;
+        return configure(CONFIG_NAVDATA_DEMO, String.valueOf(demoMode).toUpperCase());
+    }
+
+    /**
+     * Select the navdata mode and the option tags the drone sends. Only the
+     * selected options are parsed from the received navdata.
+     *
+     * @param demoMode True for demo mode, where only the selected options are
+     * sent. In full mode the drone sends all options and all are parsed.
+     * @param options Bit mask of option tags, e.g. 1 &lt;&lt; 0 for DEMO.
+     * @return future completed when both settings are acknowledged
+     */
+    public CompletableFuture<Boolean> cmdNavData(boolean demoMode, int options) {
+        Integer requested = options;
+        navdataDemo = demoMode;
+        navdataOptions = requested;
+        CompletableFuture<Boolean> mode = configure(CONFIG_NAVDATA_DEMO, String.valueOf(demoMode).toUpperCase());
+        CompletableFuture<Boolean> mask = configure(CONFIG_NAVDATA_OPTIONS, String.valueOf(options));
+        if (demoMode) {
+            // Keep parsing everything until the drone has switched, unless changed again meanwhile
+            mask.thenRun(() -> {
+                if (Objects.equals(navdataOptions, requested)) {
+                    parseMask = options;
+                }
+            });
+        } else {
+            parseMask = -1;
+        }
+        return mode.thenCombine(mask, (a, b) -> a || b);
+    }
+
+    /**
+     * Change a configuration value asynchronously.
+     *
+     * Commands are sent one at a time and each waits for the drone to
+     * acknowledge it before the next is sent. The command is not sent if the
+     * value equals the cached drone configuration. Requests for the same key
+     * that have not been sent yet are merged and the latest value wins.
+     *
+     * @param key Configuration key, e.g. "control:altitude_max".
+     * @param value New value.
+     * @return future completed with true when the drone acknowledged the
+     * change, false if it was already set. Completed exceptionally with
+     * TimeoutException if the drone did not acknowledge it or navdata is not
+     * received, so the acknowledgement can't be seen.
+     */
+    public CompletableFuture<Boolean> configure(String key, String value) {
+        return configQueue.submit(key, value);
+    }
+
+    /**
+     * Set a configuration value without waiting for the acknowledgement. The
+     * command is sent only if the value differs from the cached drone
+     * configuration. The key is unknown in the cache until it is fetched again,
+     * since the value is not confirmed.
+     *
+     * @param key Configuration key, e.g. "control:altitude_max".
+     * @param value New value.
+     * @return true if the command was sent.
+     * @throws IOException
+     */
+    public boolean setConfig(String key, String value) throws IOException {
+        if (value.equals(getConfig().get(key))) {
+            Logger.getLogger(ARDrone.class.getName()).log(Level.FINE, "Config " + key + " already " + value);
+            return false;
+        }
+        sendConfig(key, value);
+        config.remove(key);
+        return true;
+    }
+
+    private void sendConfig(String key, String value) throws IOException {
+        sendAt(AT.CONFIG, formatConfig(key, value));
     }
 
-    public void cmdNavData(boolean demoMode) throws IOException {
-        sendInternalCommand(InternalCommand.START_NAVDATA, String.valueOf(demoMode).toUpperCase());
+    /**
+     * Get the drone configuration. It is fetched from the drone on first use
+     * and again after it has been invalidated or is too old.
+     *
+     * @return cached configuration, empty if it could not be fetched.
+     */
+    public DroneConfig getConfig() {
+        synchronized (configLock) {
+            long now = System.currentTimeMillis();
+            boolean stale = !config.isLoaded() || now - config.getLoadTime() > CONFIG_MAX_AGE;
+            if (stale && now - lastConfigFetch > CONFIG_RETRY) {
+                lastConfigFetch = now;
+                try {
+                    fetchConfig();
+                } catch (IOException e) {
+                    Logger.getLogger(ARDrone.class.getName()).log(Level.FINE, "Failed to read configuration", e);
+                }
+            }
+        }
+        return config;
+    }
+
+    /**
+     * Mark the cached configuration outdated, for example after the drone may
+     * have restarted.
+     */
+    public void invalidateConfig() {
+        config.invalidate();
+        lastConfigFetch = 0;
+    }
+
+    private void fetchConfig() throws IOException {
+        try (Socket s = new Socket()) {
+            s.connect(new InetSocketAddress(inetAddr, ctrlPort), TIMEOUT_CONFIG);
+            s.setSoTimeout(TIMEOUT_CONFIG);
+            sendInternalCommand(InternalCommand.GET_CONFIG);
+
+            // The drone keeps the connection open, read until it goes quiet
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buf = new byte[MAX_PACKET_SIZE];
+            InputStream in = s.getInputStream();
+            try {
+                int n;
+                while ((n = in.read(buf)) >= 0) {
+                    out.write(buf, 0, n);
+                }
+            } catch (SocketTimeoutException e) {
+                // End of configuration
+            }
+            config.load(out.toString("ISO-8859-1"));
+        }
+        Logger.getLogger(ARDrone.class.getName()).log(Level.FINE, "Read " + config.getValues().size() + " configuration values");
+    }
+
+    private static String formatConfig(String key, String value) {
+        return "\"" + key + "\",\"" + value + "\"";
     }
 
     /**
@@ -231,18 +586,95 @@ public final class ARDrone {
     }
 
     public void sendCommand(AT atCommand, String payload) throws IOException {
-        sendCmd(formatCommand(atCommand, payload));
+        sendCommand(atCommand, payload, System.nanoTime());
+    }
+
+    /**
+     * Send a command. AT*REF land and emergency reset are sent immediately
+     * ahead of queued commands, others are queued.
+     *
+     * @param atCommand
+     * @param payload
+     * @param arrivalNanos System.nanoTime() when the request was received.
+     * @throws IOException
+     */
+    public void sendCommand(AT atCommand, String payload, long arrivalNanos) throws IOException {
+        if (atCommand == AT.CONFIG && payload != null) {
+            // Configs go through the acknowledged queue
+            String[] kv = payload.split(AT_PAYLOAD_DELIM, 2);
+            if (kv.length == 2) {
+                String key = unquote(kv[0]);
+                configure(key, unquote(kv[1])).whenComplete((sent, e) -> {
+                    if (e != null) {
+                        Logger.getLogger(ARDrone.class.getName()).log(Level.WARNING, "Config " + key + " failed", e);
+                    }
+                });
+                return;
+            }
+        }
+        if (atCommand == AT.CONFIG) {
+            config.invalidate();
+        }
+        commandSender.submit(atCommand, payload, isUrgent(atCommand, payload), arrivalNanos);
+    }
+
+    /* Only land and emergency reset may preempt queued commands, not takeoff */
+    static boolean isUrgent(AT cmd, String payload) {
+        if (cmd != AT.REF || payload == null) {
+            return false;
+        }
+        String p = payload.trim();
+        return p.equals(InternalCommand.LAND.payload) || p.equals(InternalCommand.RESET_EMERGENCY.payload);
+    }
+
+    /**
+     * Latency of urgent commands from arrival to the socket.
+     *
+     * @return
+     */
+    CommandSender.LatencyStats getUrgentLatency() {
+        return commandSender.getUrgentLatency();
+    }
+
+    private static String unquote(String s) {
+        s = s.trim();
+        return s.length() >= 2 && s.startsWith("\"") && s.endsWith("\"") ? s.substring(1, s.length() - 1) : s;
     }
 
     private void sendInternalCommand(InternalCommand cmd, Object... values) throws IOException {
-        sendCmd(formatCommand(cmd, values));
+        sendAt(cmd.cmd, formatPayload(cmd, values));
+    }
+
+    private void queueInternalCommand(InternalCommand cmd, long arrivalNanos, Object... values) throws IOException {
+        String payload = formatPayload(cmd, values);
+        commandSender.submit(cmd.cmd, payload, isUrgent(cmd.cmd, payload), arrivalNanos);
+    }
+
+    private static String formatPayload(InternalCommand cmd, Object... values) {
+        return cmd.payload != null && values.length > 0 ? String.format(cmd.payload, values) : cmd.payload;
+    }
+
+    /* Sequence numbers must reach the socket in order */
+    private void sendAt(AT cmd, String payload) throws IOException {
+        synchronized (wireLock) {
+            sendCmd(formatCommand(cmd, payload, (Object[]) null));
+        }
     }
 
     private void sendCmd(String cmd) throws IOException {
-        System.out.println("Send to drone '" + inetAddr.getHostAddress() + "':" + comPort + " -> " + cmd);
+        if (LOG.isLoggable(Level.FINE)) {
+            LOG.log(Level.FINE, "Send to drone '" + inetAddr.getHostAddress() + "':" + comPort + " -> " + cmd);
+        }
+        DroneEvents.CommandSend event = new DroneEvents.CommandSend();
+        event.begin();
         byte[] buffer = (cmd + "\r").getBytes();
         DatagramPacket packet = new DatagramPacket(buffer, buffer.length, inetAddr, comPort);
         comSocket.send(packet);
+        event.end();
+        if (event.shouldCommit()) {
+            event.command = cmd;
+            event.commit();
+        }
     }
 
     private boolean isRunning() {
@@ -284,8 +716,8 @@ public final class ARDrone {
 
         INIT_BLINK(AT.LED, "20,1056964608,%d"),
         RESET_EMERGENCY(AT.REF, "290717952"),
-        MAX_ALTITUDE(AT.CONFIG, "\"control:altitude_max\",\"%d\""),
-        START_NAVDATA(AT.CONFIG, "\"general:navdata_demo\",\"%s\""),
+        GET_CONFIG(AT.CTRL, "4,0"),
+        ACK_CONTROL(AT.CTRL, "5,0"),
         WATCHDOG(AT.COMWDG),
         TRIM(AT.FTRIM),
         TAKEOFF(AT.REF, "290718208"),
@@ -336,6 +768,89 @@ public final class ARDrone {
         }
     }
 
+    /**
+     * Add callback that receives every navdata packet regardless of the
+     * navdata interval. Callbacks are invoked in the navdata thread and must
+     * return quickly.
+     *
+     * @param cb
+     */
+    public void addPacketCallback(DroneStateCallback cb) {
+        synchronized (packetCallbacks) {
+            packetCallbacks.add(cb);
+        }
+    }
+
+    public void removePacketCallback(DroneStateCallback cb) {
+        synchronized (packetCallbacks) {
+            packetCallbacks.remove(cb);
+        }
+    }
+
+    /**
+     * Listener for navdata link state changes.
+     */
+    public interface LinkListener {
+
+        /**
+         * Called when navdata has not been received within the expected time.
+         *
+         * @param lastPacketTime Time of the last received packet.
+         */
+        void onLinkDown(long lastPacketTime);
+
+        /**
+         * Called when navdata is received again.
+         *
+         * @param outage Time without navdata in milliseconds.
+         */
+        void onLinkUp(long outage);
+    }
+
+    /**
+     * Listener for navdata state bit changes.
+     */
+    public interface StateBitListener {
+
+        /**
+         * Called in the navdata thread for each state bit that changed. All
+         * bits are reported for the first packet received.
+         *
+         * @param bit Bit index 0-31, see {@link NavData#getStateBitName(int)}.
+         * @param value New value of the bit.
+         * @param initial True if this is the first packet and there is no
+         * previous value.
+         * @param sequence Navdata sequence number.
+         * @param time Receive time.
+         */
+        void onStateBitChanged(int bit, boolean value, boolean initial, long sequence, long time);
+    }
+
+    public void addStateBitListener(StateBitListener l) {
+        stateBitListeners.add(l);
+    }
+
+    public void removeStateBitListener(StateBitListener l) {
+        stateBitListeners.remove(l);
+    }
+
+    /**
+     * Clock offset, latency and jitter estimated from the navdata time option.
+     *
+     * @return
+     */
+    public ClockOffsetEstimator getClock() {
+        return clock;
+    }
+
+    public void addLinkListener(LinkListener l) {
+        linkListeners.add(l);
+    }
+
+    public void removeLinkListener(LinkListener l) {
+        linkListeners.remove(l);
+    }
+
     /**
      * Supported Drone AT commands.
      */
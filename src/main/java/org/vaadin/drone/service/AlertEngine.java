@@ -0,0 +1,142 @@
+package org.vaadin.drone.service;
+
+import java.util.List;
+
+/**
+ * Evaluates threshold alerts over navdata telemetry.
+ *
+ * The rules are compiled once into primitive arrays. A rule's condition is
+ * normalized so that "below" is "above" with negated values, which makes each
+ * evaluation a single comparison against the trigger or clear level depending
+ * on the current state. Evaluating a sample never allocates, and the listener
+ * is only called on transitions.
+ *
+ * Not thread safe: samples are expected to arrive from the navdata thread.
+ *
+ * @author Sami Ekblad
+ */
+public class AlertEngine implements ARDrone.DroneStateCallback {
+
+    private final AlertRule[] rules;
+    private final TelemetryField[] fields;
+    private final AlertListener listener;
+
+    /* Compiled rules, indexed by rule */
+    private final double[] sign;
+    private final double[] triggerLevel;
+    private final double[] clearLevel;
+    private final boolean[] absolute;
+    private final long[] debounce;
+
+    /* Current state */
+    private final boolean[] active;
+    private final long[] pendingSince;
+
+    /**
+     * Create new engine.
+     *
+     * @param rules Alert rules.
+     * @param listener Receiver of the alert transitions.
+     * @throws IllegalArgumentException if a rule is invalid
+     */
+    public AlertEngine(List<AlertRule> rules, AlertListener listener) {
+        int n = rules.size();
+        this.rules = rules.toArray(new AlertRule[n]);
+        this.listener = listener;
+        fields = new TelemetryField[n];
+        sign = new double[n];
+        triggerLevel = new double[n];
+        clearLevel = new double[n];
+        absolute = new boolean[n];
+        debounce = new long[n];
+        active = new boolean[n];
+        pendingSince = new long[n];
+        for (int i = 0; i < n; i++) {
+            AlertRule r = this.rules[i];
+            fields[i] = r.getField() != null ? TelemetryField.fromKey(r.getField()) : null;
+            if (r.getName() == null || fields[i] == null) {
+                throw new IllegalArgumentException("Invalid alert: " + r);
+            }
+            if (AlertRule.ABOVE.equalsIgnoreCase(r.getCondition())) {
+                sign[i] = 1;
+            } else if (AlertRule.BELOW.equalsIgnoreCase(r.getCondition())) {
+                sign[i] = -1;
+            } else {
+                throw new IllegalArgumentException("Invalid alert condition: " + r);
+            }
+            triggerLevel[i] = sign[i] * r.getThreshold();
+            clearLevel[i] = sign[i] * r.getThreshold() - Math.abs(r.getHysteresis());
+            absolute[i] = r.isAbsolute();
+            debounce[i] = r.getDebounce();
+            pendingSince[i] = -1;
+        }
+    }
+
+    /**
+     * Fields the rules are evaluated on.
+     *
+     * @return
+     */
+    public TelemetryField[] getFields() {
+        return fields.clone();
+    }
+
+    @Override
+    public void onDroneStateChanged(NavData latestState) {
+        add(latestState, System.currentTimeMillis());
+    }
+
+    /**
+     * Evaluate the rules for a sample received at given time.
+     *
+     * @param d
+     * @param timeMillis
+     */
+    public void add(NavData d, long timeMillis) {
+        for (int i = 0; i < rules.length; i++) {
+            double v = fields[i].read(d);
+            if (absolute[i]) {
+                v = Math.abs(v);
+            }
+            boolean on = sign[i] * v > (active[i] ? clearLevel[i] : triggerLevel[i]);
+            if (on == active[i]) {
+                pendingSince[i] = -1;
+                continue;
+            }
+            if (pendingSince[i] < 0) {
+                pendingSince[i] = timeMillis;
+            }
+            if (timeMillis - pendingSince[i] >= debounce[i]) {
+                active[i] = on;
+                pendingSince[i] = -1;
+                listener.onAlert(rules[i], on, v, timeMillis);
+            }
+        }
+    }
+
+    /**
+     * Is the alert currently active.
+     *
+     * @param rule Index of the rule.
+     * @return
+     */
+    public boolean isActive(int rule) {
+        return active[rule];
+    }
+
+    /**
+     * Receiver of alert transitions.
+     */
+    public interface AlertListener {
+
+        /**
+         * Called when an alert becomes active or clears.
+         *
+         * @param rule
+         * @param active
+         * @param value Value that caused the transition.
+         * @param timeMillis
+         */
+        void onAlert(AlertRule rule, boolean active, double value, long timeMillis);
+    }
+}
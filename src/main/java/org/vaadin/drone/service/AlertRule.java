@@ -0,0 +1,109 @@
+package org.vaadin.drone.service;
+
+/**
+ * Threshold alert on a telemetry field, configured in application.properties:
+ *
+ * <pre>
+ * drone.alerts[0].name=batteryLow
+ * drone.alerts[0].field=battery
+ * drone.alerts[0].condition=below
+ * drone.alerts[0].threshold=20
+ * drone.alerts[0].hysteresis=5
+ * drone.alerts[0].debounce=2000
+ * </pre>
+ *
+ * The alert becomes active when the value crosses the threshold and clears
+ * when it is back by more than the hysteresis. Both transitions must hold for
+ * the debounce time in milliseconds.
+ *
+ * @author Sami Ekblad
+ */
+public class AlertRule {
+
+    public static final String ABOVE = "above";
+    public static final String BELOW = "below";
+
+    private String name;
+    private String field;
+    private String condition = ABOVE;
+    private double threshold;
+    private double hysteresis;
+    private long debounce;
+    private boolean absolute;
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Field key, see {@link TelemetryField#getKey()}.
+     *
+     * @return
+     */
+    public String getField() {
+        return field;
+    }
+
+    public void setField(String field) {
+        this.field = field;
+    }
+
+    /**
+     * Either "above" or "below".
+     *
+     * @return
+     */
+    public String getCondition() {
+        return condition;
+    }
+
+    public void setCondition(String condition) {
+        this.condition = condition;
+    }
+
+    public double getThreshold() {
+        return threshold;
+    }
+
+    public void setThreshold(double threshold) {
+        this.threshold = threshold;
+    }
+
+    public double getHysteresis() {
+        return hysteresis;
+    }
+
+    public void setHysteresis(double hysteresis) {
+        this.hysteresis = hysteresis;
+    }
+
+    public long getDebounce() {
+        return debounce;
+    }
+
+    public void setDebounce(long debounce) {
+        this.debounce = debounce;
+    }
+
+    /**
+     * Compare the absolute value, e.g. for roll in both directions.
+     *
+     * @return
+     */
+    public boolean isAbsolute() {
+        return absolute;
+    }
+
+    public void setAbsolute(boolean absolute) {
+        this.absolute = absolute;
+    }
+
+    @Override
+    public String toString() {
+        return "AlertRule{" + "name=" + name + ", field=" + field + ", condition=" + condition + ", threshold=" + threshold + ", hysteresis=" + hysteresis + ", debounce=" + debounce + ", absolute=" + absolute + '}';
+    }
+}
@@ -0,0 +1,152 @@
+package org.vaadin.drone.service;
+
+/**
+ * Estimates the offset between the drone clock and the local clock, and from
+ * that the navdata latency and jitter.
+ *
+ * For each packet the offset is local receive time minus drone send time. It
+ * includes the unknown one-way delay, so the smallest offset over a sliding
+ * window is taken as the clock offset at the minimum path delay. The latency
+ * of a packet is its delay above that minimum. The minimum is kept with a
+ * monotonic deque in primitive arrays, so adding a sample is amortized O(1)
+ * and never allocates. Jitter is the interarrival jitter of RFC 3550.
+ *
+ * The drone time wraps every 2048 seconds, which is handled by unwrapping.
+ *
+ * Not thread safe for updates: samples are expected to arrive from the
+ * navdata thread.
+ *
+ * @author Sami Ekblad
+ */
+public class ClockOffsetEstimator {
+
+    /* Drone time is 11 bits of seconds and 21 bits of microseconds */
+    static final long DRONE_TIME_WRAP = 2048L * 1000000;
+
+    private final long windowMicros;
+
+    /* Deque of (time, offset) with increasing offsets, as a ring */
+    private final long[] dequeTime;
+    private final long[] dequeOffset;
+    private int head;
+    private int size;
+
+    private long lastDroneTime = -1;
+    private long wrap;
+    private long lastTransit;
+    private volatile long samples;
+
+    private volatile long offset;
+    private volatile long latency;
+    private volatile double meanLatency;
+    private volatile double jitter;
+
+    /**
+     * Create new estimator.
+     *
+     * @param windowMillis Length of the minimum filter window.
+     * @param maxRate Maximum number of samples per second.
+     */
+    public ClockOffsetEstimator(long windowMillis, int maxRate) {
+        this.windowMicros = windowMillis * 1000;
+        int capacity = (int) Math.max(2, windowMillis * maxRate / 1000 + 1);
+        dequeTime = new long[capacity];
+        dequeOffset = new long[capacity];
+    }
+
+    /**
+     * Add a sample.
+     *
+     * @param droneTimeMicros Drone send time from the navdata time option.
+     * @param receiveNanos Local receive time, System.nanoTime().
+     */
+    public void add(long droneTimeMicros, long receiveNanos) {
+        if (lastDroneTime >= 0 && droneTimeMicros < lastDroneTime - DRONE_TIME_WRAP / 2) {
+            wrap += DRONE_TIME_WRAP;
+        }
+        lastDroneTime = droneTimeMicros;
+        long local = receiveNanos / 1000;
+        long transit = local - (droneTimeMicros + wrap);
+
+        // Expire old samples from the front, drop dominated ones from the back
+        while (size > 0 && dequeTime[head] < local - windowMicros) {
+            head = (head + 1) % dequeTime.length;
+            size--;
+        }
+        while (size > 0 && dequeOffset[(head + size - 1) % dequeTime.length] >= transit) {
+            size--;
+        }
+        if (size == dequeTime.length) {
+            // Faster than expected: keep the minimum at the head, give up the newest candidate
+            size--;
+        }
+        int tail = (head + size) % dequeTime.length;
+        dequeTime[tail] = local;
+        dequeOffset[tail] = transit;
+        size++;
+
+        offset = dequeOffset[head];
+        latency = transit - offset;
+        if (samples > 0) {
+            jitter += (Math.abs(transit - lastTransit) - jitter) / 16;
+            meanLatency += (latency - meanLatency) / 16;
+        } else {
+            meanLatency = latency;
+        }
+        lastTransit = transit;
+        samples++;
+    }
+
+    /**
+     * Forget the state, e.g. when the drone may have restarted.
+     */
+    public void reset() {
+        size = 0;
+        lastDroneTime = -1;
+        wrap = 0;
+        samples = 0;
+        jitter = 0;
+        meanLatency = 0;
+        latency = 0;
+    }
+
+    /**
+     * Local time minus drone time at the minimum delay, in microseconds.
+     *
+     * @return
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+    /**
+     * Delay of the latest sample above the minimum delay, in microseconds.
+     *
+     * @return
+     */
+    public long getLatency() {
+        return latency;
+    }
+
+    /**
+     * Smoothed delay above the minimum delay, in microseconds.
+     *
+     * @return
+     */
+    public double getMeanLatency() {
+        return meanLatency;
+    }
+
+    /**
+     * Interarrival jitter in microseconds.
+     *
+     * @return
+     */
+    public double getJitter() {
+        return jitter;
+    }
+
+    public long getSamples() {
+        return samples;
+    }
+}
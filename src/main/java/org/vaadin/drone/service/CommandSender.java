@@ -0,0 +1,199 @@
+package org.vaadin.drone.service;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Two-level AT command pipeline.
+ *
+ * Normal commands are queued and sent by a background thread in order. Urgent
+ * commands (AT*REF land and emergency reset) are sent immediately in the
+ * calling thread, ahead of anything queued, and repeated a few times because
+ * UDP may lose them. Motion commands queued before an urgent command are
+ * discarded, so they cannot override it.
+ *
+ * Sequence numbers are assigned when a command is written to the socket, so
+ * the drone never sees them out of order.
+ *
+ * @author Sami Ekblad
+ */
+class CommandSender {
+
+    static final int CAPACITY = 64;
+    static final int REPEAT_COUNT = 3;
+    static final long REPEAT_INTERVAL = 30;
+    /* Urgent sends slower than this are logged */
+    static final long LATENCY_WARNING = 5000000;
+
+    interface Wire {
+
+        void send(ARDrone.AT cmd, String payload) throws IOException;
+    }
+
+    private final Wire wire;
+    private final Thread thread;
+    private final ArrayDeque<Command> queue = new ArrayDeque<>();
+    private final LatencyStats urgentLatency = new LatencyStats();
+
+    /* Urgent command being repeated, guarded by this */
+    private Command repeat;
+    private int repeatsLeft;
+    private long nextRepeat;
+    private long dropped;
+
+    CommandSender(Wire wire) {
+        this.wire = wire;
+        thread = new Thread(this::sendLoop, "drone-commands");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stop the sender thread. Commands not sent yet are discarded.
+     */
+    void close() {
+        thread.interrupt();
+    }
+
+    /**
+     * Send a command.
+     *
+     * @param cmd
+     * @param payload Formatted payload or null.
+     * @param urgent True to bypass the queue.
+     * @param arrivalNanos System.nanoTime() when the request was received.
+     * @throws IOException if an urgent command could not be sent
+     */
+    void submit(ARDrone.AT cmd, String payload, boolean urgent, long arrivalNanos) throws IOException {
+        Command c = new Command(cmd, payload);
+        if (!urgent) {
+            synchronized (this) {
+                if (queue.size() >= CAPACITY) {
+                    queue.poll();
+                    dropped++;
+                }
+                queue.add(c);
+                notifyAll();
+            }
+            return;
+        }
+        synchronized (this) {
+            // Stale motion must not follow a safety command
+            for (Iterator<Command> i = queue.iterator(); i.hasNext();) {
+                if (i.next().cmd == ARDrone.AT.PCMD) {
+                    i.remove();
+                    dropped++;
+                }
+            }
+            repeat = c;
+            repeatsLeft = REPEAT_COUNT;
+            nextRepeat = System.currentTimeMillis() + REPEAT_INTERVAL;
+            notifyAll();
+        }
+        wire.send(cmd, payload);
+        long latency = System.nanoTime() - arrivalNanos;
+        urgentLatency.add(latency);
+        if (latency > LATENCY_WARNING) {
+            Logger.getLogger(CommandSender.class.getName()).log(Level.WARNING, "Urgent " + cmd + " took " + latency / 1000 + " us");
+        }
+    }
+
+    private void sendLoop() {
+        while (true) {
+            Command c;
+            synchronized (this) {
+                try {
+                    c = next();
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+            try {
+                wire.send(c.cmd, c.payload);
+            } catch (IOException e) {
+                Logger.getLogger(CommandSender.class.getName()).log(Level.WARNING, "Failed to send " + c.cmd, e);
+            }
+        }
+    }
+
+    /* Wait for a due repeat or a queued command, repeats first */
+    private Command next() throws InterruptedException {
+        while (true) {
+            long now = System.currentTimeMillis();
+            if (repeat != null && now >= nextRepeat) {
+                Command c = repeat;
+                if (--repeatsLeft == 0) {
+                    repeat = null;
+                } else {
+                    nextRepeat = now + REPEAT_INTERVAL;
+                }
+                return c;
+            }
+            Command c = queue.poll();
+            if (c != null) {
+                return c;
+            }
+            wait(repeat != null ? Math.max(1, nextRepeat - now) : 0);
+        }
+    }
+
+    synchronized int size() {
+        return queue.size();
+    }
+
+    /**
+     * Number of queued commands dropped because the queue was full or they
+     * were superseded by an urgent command.
+     *
+     * @return
+     */
+    synchronized long getDropped() {
+        return dropped;
+    }
+
+    LatencyStats getUrgentLatency() {
+        return urgentLatency;
+    }
+
+    private static class Command {
+
+        private final ARDrone.AT cmd;
+        private final String payload;
+
+        private Command(ARDrone.AT cmd, String payload) {
+            this.cmd = cmd;
+            this.payload = payload;
+        }
+    }
+
+    /**
+     * Latency from request arrival to the socket.
+     */
+    static class LatencyStats {
+
+        private long count;
+        private long total;
+        private long max;
+
+        synchronized void add(long nanos) {
+            count++;
+            total += nanos;
+            max = Math.max(max, nanos);
+        }
+
+        synchronized long getCount() {
+            return count;
+        }
+
+        synchronized long getMeanMicros() {
+            return count > 0 ? total / count / 1000 : 0;
+        }
+
+        synchronized long getMaxMicros() {
+            return max / 1000;
+        }
+    }
+}
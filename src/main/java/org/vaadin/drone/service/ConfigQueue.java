@@ -0,0 +1,227 @@
+package org.vaadin.drone.service;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Acknowledged AT*CONFIG sending.
+ *
+ * The drone processes one CONFIG at a time and signals it with the control
+ * received bit of the navdata state. This queue sends the next CONFIG as soon
+ * as the previous one has been acknowledged and the bit cleared with
+ * AT*CTRL=5. Unacknowledged commands are retried. Pending requests for the same
+ * key are merged so only the latest value is sent. The cache is updated only
+ * when the drone has acknowledged the value, and the key is removed from the
+ * cache if it was sent but not acknowledged.
+ *
+ * If navdata is not being received, commands are sent once without waiting
+ * and complete with TimeoutException, since they can't be confirmed.
+ *
+ * @author Sami Ekblad
+ */
+class ConfigQueue implements ARDrone.DroneStateCallback {
+
+    private static final long ACK_TIMEOUT = 500;
+    private static final long NAVDATA_TIMEOUT = 1000;
+    private static final int MAX_RETRIES = 3;
+
+    interface Sender {
+
+        void send(String key, String value) throws IOException;
+    }
+
+    interface AckSender {
+
+        void send() throws IOException;
+    }
+
+    interface Cache {
+
+        /**
+         * Current value of a key, null if not known.
+         */
+        String get(String key);
+
+        /**
+         * Called when the drone has acknowledged a value.
+         */
+        void put(String key, String value);
+
+        /**
+         * Called when a value may or may not have been applied.
+         */
+        void remove(String key);
+    }
+
+    private final Sender configSender;
+    private final AckSender ackSender;
+    private final Cache cache;
+    private final Thread thread;
+    private final LinkedHashMap<String, Pending> pending = new LinkedHashMap<>();
+
+    /* Latest navdata state, guarded by this */
+    private boolean ackBit;
+    private long lastNavdata;
+
+    /**
+     * Create new queue.
+     *
+     * @param configSender Sends one CONFIG command.
+     * @param ackSender Sends the CTRL command that clears the ack bit.
+     * @param cache Drone configuration cache.
+     */
+    ConfigQueue(Sender configSender, AckSender ackSender, Cache cache) {
+        this.configSender = configSender;
+        this.ackSender = ackSender;
+        this.cache = cache;
+        thread = new Thread(this::sendLoop, "drone-config");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stop the sender thread. Changes not sent yet are discarded.
+     */
+    void close() {
+        thread.interrupt();
+    }
+
+    /**
+     * Queue a configuration change.
+     *
+     * @param key
+     * @param value
+     * @return future completed with true when the drone acknowledged the
+     * change, false if it was not sent because the value was already set.
+     */
+    synchronized CompletableFuture<Boolean> submit(String key, String value) {
+        return submit(key, value, false);
+    }
+
+    /**
+     * Queue a configuration change.
+     *
+     * @param key
+     * @param value
+     * @param force Send even if the cached value is the same.
+     * @return future completed with true when the drone acknowledged the
+     * change, false if it was not sent because the value was already set.
+     */
+    synchronized CompletableFuture<Boolean> submit(String key, String value, boolean force) {
+        CompletableFuture<Boolean> f = new CompletableFuture<>();
+        Pending p = pending.get(key);
+        if (p == null) {
+            p = new Pending(key);
+            pending.put(key, p);
+        }
+        p.value = value;
+        p.force |= force;
+        p.futures.add(f);
+        notifyAll();
+        return f;
+    }
+
+    @Override
+    public synchronized void onDroneStateChanged(NavData latestState) {
+        lastNavdata = System.currentTimeMillis();
+        boolean bit = latestState.isControlReceived();
+        if (bit != ackBit) {
+            ackBit = bit;
+            notifyAll();
+        }
+    }
+
+    private void sendLoop() {
+        while (true) {
+            Pending p;
+            synchronized (this) {
+                while (pending.isEmpty()) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                Iterator<Pending> i = pending.values().iterator();
+                p = i.next();
+                i.remove();
+            }
+            try {
+                if (!p.force && p.value.equals(cache.get(p.key))) {
+                    p.futures.forEach(f -> f.complete(false));
+                } else {
+                    send(p);
+                    cache.put(p.key, p.value);
+                    p.futures.forEach(f -> f.complete(true));
+                }
+            } catch (IOException | TimeoutException | RuntimeException e) {
+                cache.remove(p.key);
+                p.futures.forEach(f -> f.completeExceptionally(e));
+            } catch (InterruptedException e) {
+                cache.remove(p.key);
+                p.futures.forEach(f -> f.completeExceptionally(e));
+                return;
+            }
+        }
+    }
+
+    private void send(Pending p) throws IOException, TimeoutException, InterruptedException {
+        if (!isNavdataAlive()) {
+            configSender.send(p.key, p.value);
+            throw new TimeoutException("Config " + p.key + " sent without navdata, not acknowledged");
+        }
+        // A stale ack from an earlier command would be taken for ours
+        if (awaitAck(true, 0)) {
+            clearAck();
+        }
+        for (int attempt = 0; attempt <= MAX_RETRIES; attempt++) {
+            configSender.send(p.key, p.value);
+            if (awaitAck(true, ACK_TIMEOUT)) {
+                clearAck();
+                return;
+            }
+            Logger.getLogger(ConfigQueue.class.getName()).log(Level.FINE, "No ack for config " + p.key + ", retrying");
+        }
+        throw new TimeoutException("Config " + p.key + " not acknowledged");
+    }
+
+    private void clearAck() throws IOException, InterruptedException {
+        ackSender.send();
+        if (!awaitAck(false, ACK_TIMEOUT)) {
+            Logger.getLogger(ConfigQueue.class.getName()).log(Level.FINE, "Config ack bit not cleared");
+        }
+    }
+
+    private synchronized boolean awaitAck(boolean state, long timeout) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeout;
+        long wait = timeout;
+        while (ackBit != state && wait > 0) {
+            wait(wait);
+            wait = deadline - System.currentTimeMillis();
+        }
+        return ackBit == state;
+    }
+
+    private synchronized boolean isNavdataAlive() {
+        return System.currentTimeMillis() - lastNavdata < NAVDATA_TIMEOUT;
+    }
+
+    private static class Pending {
+
+        private final String key;
+        private final List<CompletableFuture<Boolean>> futures = new ArrayList<>();
+        private String value;
+        private boolean force;
+
+        private Pending(String key) {
+            this.key = key;
+        }
+    }
+}
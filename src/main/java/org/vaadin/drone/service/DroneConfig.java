@@ -0,0 +1,106 @@
+package org.vaadin.drone.service;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Cached AR.Drone2 configuration.
+ *
+ * The drone sends its configuration over the control port as "key = value"
+ * lines. Values are kept as received and converted on access.
+ *
+ * @author Sami Ekblad
+ */
+public class DroneConfig {
+
+    private final Map<String, String> values = new HashMap<>();
+    private long loadTime;
+    private boolean loaded;
+
+    /**
+     * Replace the cached values with a configuration dump.
+     *
+     * @param text Configuration as sent by the drone.
+     */
+    public synchronized void load(String text) {
+        values.clear();
+        for (String line : text.split("\n")) {
+            int eq = line.indexOf('=');
+            if (eq > 0) {
+                values.put(line.substring(0, eq).trim(), line.substring(eq + 1).trim());
+            }
+        }
+        loaded = !values.isEmpty();
+        loadTime = System.currentTimeMillis();
+    }
+
+    /**
+     * Forget the cached values. They are fetched again on next use, and until
+     * then every value is unknown.
+     */
+    public synchronized void invalidate() {
+        values.clear();
+        loaded = false;
+    }
+
+    public synchronized boolean isLoaded() {
+        return loaded;
+    }
+
+    public synchronized long getLoadTime() {
+        return loadTime;
+    }
+
+    /**
+     * Update a single cached value after the drone has acknowledged it.
+     *
+     * @param key
+     * @param value
+     */
+    public synchronized void put(String key, String value) {
+        values.put(key, value);
+    }
+
+    /**
+     * Forget a single value, for example when a change was sent but not
+     * acknowledged.
+     *
+     * @param key
+     */
+    public synchronized void remove(String key) {
+        values.remove(key);
+    }
+
+    public synchronized String get(String key) {
+        return values.get(key);
+    }
+
+    public int getInt(String key, int defaultValue) {
+        String v = get(key);
+        try {
+            return v != null ? Integer.parseInt(v) : defaultValue;
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    public float getFloat(String key, float defaultValue) {
+        String v = get(key);
+        try {
+            return v != null ? Float.parseFloat(v) : defaultValue;
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    public boolean getBoolean(String key, boolean defaultValue) {
+        String v = get(key);
+        return v != null ? "TRUE".equalsIgnoreCase(v) : defaultValue;
+    }
+
+    public synchronized Map<String, String> getValues() {
+        return Collections.unmodifiableMap(new HashMap<>(values));
+    }
+
+}
@@ -0,0 +1,99 @@
+package org.vaadin.drone.service;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder events of the bridge hot paths.
+ *
+ * The events are disabled unless a recording enables them, e.g. with
+ * <code>-XX:StartFlightRecording</code> or <code>jcmd &lt;pid&gt; JFR.start</code>,
+ * and cost close to nothing while disabled. String fields are only filled
+ * when the event will be committed.
+ *
+ * @author Sami Ekblad
+ */
+final class DroneEvents {
+
+    static final String CATEGORY = "AR.Drone";
+
+    private DroneEvents() {
+    }
+
+    @Name("org.vaadin.drone.NavdataReceive")
+    @Label("Navdata Receive")
+    @Description("Wait for and receive a navdata packet")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    static final class NavdataReceive extends Event {
+
+        @Label("Size")
+        @DataAmount
+        int size;
+    }
+
+    @Name("org.vaadin.drone.NavdataDecode")
+    @Label("Navdata Decode")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    static final class NavdataDecode extends Event {
+
+        @Label("Sequence Number")
+        long sequence;
+
+        @Label("Size")
+        @DataAmount
+        int size;
+    }
+
+    @Name("org.vaadin.drone.CallbackDispatch")
+    @Label("Callback Dispatch")
+    @Description("Navdata callbacks of one packet")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    static final class CallbackDispatch extends Event {
+
+        @Label("Sequence Number")
+        long sequence;
+
+        @Label("Callbacks")
+        int callbacks;
+
+        @Label("Throttled")
+        @Description("Includes the callbacks called at the navdata interval")
+        boolean throttled;
+    }
+
+    @Name("org.vaadin.drone.MqttPublish")
+    @Label("MQTT Publish")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    static final class MqttPublish extends Event {
+
+        @Label("Topic")
+        String topic;
+
+        @Label("Size")
+        @DataAmount
+        int size;
+
+        @Label("Buffered")
+        @Description("Buffered because the broker was not connected")
+        boolean buffered;
+    }
+
+    @Name("org.vaadin.drone.CommandSend")
+    @Label("AT Command Send")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    static final class CommandSend extends Event {
+
+        @Label("Command")
+        String command;
+    }
+}
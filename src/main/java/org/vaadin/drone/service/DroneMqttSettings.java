@@ -1,5 +1,7 @@
 package org.vaadin.drone.service;
 
+import java.util.ArrayList;
+import java.util.List;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
 
@@ -15,6 +17,7 @@ public class DroneMqttSettings {
     private String ip;
     private int cmdPort;
     private int navPort;
+    private int ctrlPort;
 
     private String mqttUrl;
     private String mqttId;
@@ -22,6 +25,53 @@ public class DroneMqttSettings {
     private String mqttPub;
     private String mqttSub;
     private boolean jsonMode;
+    private String mqttLinkPub;
+    private String mqttStatePub;
+    private String mqttLatencyPub;
+    private String mqttAlertPub;
+    private boolean kinematics;
+
+    private int sinkQueue;
+    private String sinkUdpGroup;
+    private int sinkUdpPort;
+    private long sinkUdpInterval;
+    private int sinkSsePort;
+    private long sinkSseInterval;
+    private String shmFile;
+    private int batchSize;
+    private long batchInterval;
+    private String mqttBatchPub;
+    private boolean navdataNegotiate;
+    private String mqttSubscribeSub;
+    private List<AlertRule> alerts = new ArrayList<>();
+
+    private int mqttOfflineQueue;
+    private String mqttSpillFile;
+    private int mqttSpillSize;
+    private int mqttDrainRate;
+
+    private long aggregateWindow;
+    private long aggregateSlide;
+    private String mqttAggregatePub;
+    private String aggregateFields;
+
+    private long storeRetention;
+    private int storeMaxRate;
+    private String mqttQuerySub;
+    private String mqttQueryPub;
+    private String storeFields;
+
+    private boolean persist;
+    private int persistBatchSize;
+    private long persistFlushInterval;
+    private int persistCapacity;
+
+    private boolean video;
+    private int videoPort;
+    private String mqttVideoPub;
+    private long videoSnapshotInterval;
+    private String videoRecordDir;
+    private long videoSegmentLength;
 
     public String getIp() {
         return ip;
@@ -47,6 +97,14 @@ public class DroneMqttSettings {
         this.navPort = navPort;
     }
 
+    public int getCtrlPort() {
+        return ctrlPort;
+    }
+
+    public void setCtrlPort(int ctrlPort) {
+        this.ctrlPort = ctrlPort;
+    }
+
     public String getMqttUrl() {
         return mqttUrl;
     }
@@ -87,4 +145,332 @@ public class DroneMqttSettings {
         this.jsonMode = jsonMode;
     }
 
+    public String getMqttLinkPub() {
+        return mqttLinkPub;
+    }
+
+    public void setMqttLinkPub(String mqttLinkPub) {
+        this.mqttLinkPub = mqttLinkPub;
+    }
+
+    public String getMqttStatePub() {
+        return mqttStatePub;
+    }
+
+    public void setMqttStatePub(String mqttStatePub) {
+        this.mqttStatePub = mqttStatePub;
+    }
+
+    public String getMqttLatencyPub() {
+        return mqttLatencyPub;
+    }
+
+    public void setMqttLatencyPub(String mqttLatencyPub) {
+        this.mqttLatencyPub = mqttLatencyPub;
+    }
+
+    public String getMqttAlertPub() {
+        return mqttAlertPub;
+    }
+
+    public void setMqttAlertPub(String mqttAlertPub) {
+        this.mqttAlertPub = mqttAlertPub;
+    }
+
+    public boolean isKinematics() {
+        return kinematics;
+    }
+
+    public void setKinematics(boolean kinematics) {
+        this.kinematics = kinematics;
+    }
+
+    public int getSinkQueue() {
+        return sinkQueue;
+    }
+
+    public void setSinkQueue(int sinkQueue) {
+        this.sinkQueue = sinkQueue;
+    }
+
+    public String getSinkUdpGroup() {
+        return sinkUdpGroup;
+    }
+
+    public void setSinkUdpGroup(String sinkUdpGroup) {
+        this.sinkUdpGroup = sinkUdpGroup;
+    }
+
+    public int getSinkUdpPort() {
+        return sinkUdpPort;
+    }
+
+    public void setSinkUdpPort(int sinkUdpPort) {
+        this.sinkUdpPort = sinkUdpPort;
+    }
+
+    public long getSinkUdpInterval() {
+        return sinkUdpInterval;
+    }
+
+    public void setSinkUdpInterval(long sinkUdpInterval) {
+        this.sinkUdpInterval = sinkUdpInterval;
+    }
+
+    public int getSinkSsePort() {
+        return sinkSsePort;
+    }
+
+    public void setSinkSsePort(int sinkSsePort) {
+        this.sinkSsePort = sinkSsePort;
+    }
+
+    public long getSinkSseInterval() {
+        return sinkSseInterval;
+    }
+
+    public void setSinkSseInterval(long sinkSseInterval) {
+        this.sinkSseInterval = sinkSseInterval;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public long getBatchInterval() {
+        return batchInterval;
+    }
+
+    public void setBatchInterval(long batchInterval) {
+        this.batchInterval = batchInterval;
+    }
+
+    public String getMqttBatchPub() {
+        return mqttBatchPub;
+    }
+
+    public void setMqttBatchPub(String mqttBatchPub) {
+        this.mqttBatchPub = mqttBatchPub;
+    }
+
+    public String getShmFile() {
+        return shmFile;
+    }
+
+    public void setShmFile(String shmFile) {
+        this.shmFile = shmFile;
+    }
+
+    public boolean isNavdataNegotiate() {
+        return navdataNegotiate;
+    }
+
+    public void setNavdataNegotiate(boolean navdataNegotiate) {
+        this.navdataNegotiate = navdataNegotiate;
+    }
+
+    public String getMqttSubscribeSub() {
+        return mqttSubscribeSub;
+    }
+
+    public void setMqttSubscribeSub(String mqttSubscribeSub) {
+        this.mqttSubscribeSub = mqttSubscribeSub;
+    }
+
+    public List<AlertRule> getAlerts() {
+        return alerts;
+    }
+
+    public void setAlerts(List<AlertRule> alerts) {
+        this.alerts = alerts;
+    }
+
+    public int getMqttOfflineQueue() {
+        return mqttOfflineQueue;
+    }
+
+    public void setMqttOfflineQueue(int mqttOfflineQueue) {
+        this.mqttOfflineQueue = mqttOfflineQueue;
+    }
+
+    public String getMqttSpillFile() {
+        return mqttSpillFile;
+    }
+
+    public void setMqttSpillFile(String mqttSpillFile) {
+        this.mqttSpillFile = mqttSpillFile;
+    }
+
+    public int getMqttSpillSize() {
+        return mqttSpillSize;
+    }
+
+    public void setMqttSpillSize(int mqttSpillSize) {
+        this.mqttSpillSize = mqttSpillSize;
+    }
+
+    public int getMqttDrainRate() {
+        return mqttDrainRate;
+    }
+
+    public void setMqttDrainRate(int mqttDrainRate) {
+        this.mqttDrainRate = mqttDrainRate;
+    }
+
+    public long getAggregateWindow() {
+        return aggregateWindow;
+    }
+
+    public void setAggregateWindow(long aggregateWindow) {
+        this.aggregateWindow = aggregateWindow;
+    }
+
+    public long getAggregateSlide() {
+        return aggregateSlide;
+    }
+
+    public void setAggregateSlide(long aggregateSlide) {
+        this.aggregateSlide = aggregateSlide;
+    }
+
+    public String getMqttAggregatePub() {
+        return mqttAggregatePub;
+    }
+
+    public void setMqttAggregatePub(String mqttAggregatePub) {
+        this.mqttAggregatePub = mqttAggregatePub;
+    }
+
+    public String getAggregateFields() {
+        return aggregateFields;
+    }
+
+    public void setAggregateFields(String aggregateFields) {
+        this.aggregateFields = aggregateFields;
+    }
+
+    public String getStoreFields() {
+        return storeFields;
+    }
+
+    public void setStoreFields(String storeFields) {
+        this.storeFields = storeFields;
+    }
+
+    public long getStoreRetention() {
+        return storeRetention;
+    }
+
+    public void setStoreRetention(long storeRetention) {
+        this.storeRetention = storeRetention;
+    }
+
+    public int getStoreMaxRate() {
+        return storeMaxRate;
+    }
+
+    public void setStoreMaxRate(int storeMaxRate) {
+        this.storeMaxRate = storeMaxRate;
+    }
+
+    public String getMqttQuerySub() {
+        return mqttQuerySub;
+    }
+
+    public void setMqttQuerySub(String mqttQuerySub) {
+        this.mqttQuerySub = mqttQuerySub;
+    }
+
+    public String getMqttQueryPub() {
+        return mqttQueryPub;
+    }
+
+    public void setMqttQueryPub(String mqttQueryPub) {
+        this.mqttQueryPub = mqttQueryPub;
+    }
+
+    public boolean isPersist() {
+        return persist;
+    }
+
+    public void setPersist(boolean persist) {
+        this.persist = persist;
+    }
+
+    public int getPersistBatchSize() {
+        return persistBatchSize;
+    }
+
+    public void setPersistBatchSize(int persistBatchSize) {
+        this.persistBatchSize = persistBatchSize;
+    }
+
+    public long getPersistFlushInterval() {
+        return persistFlushInterval;
+    }
+
+    public void setPersistFlushInterval(long persistFlushInterval) {
+        this.persistFlushInterval = persistFlushInterval;
+    }
+
+    public int getPersistCapacity() {
+        return persistCapacity;
+    }
+
+    public void setPersistCapacity(int persistCapacity) {
+        this.persistCapacity = persistCapacity;
+    }
+
+    public boolean isVideo() {
+        return video;
+    }
+
+    public void setVideo(boolean video) {
+        this.video = video;
+    }
+
+    public int getVideoPort() {
+        return videoPort;
+    }
+
+    public void setVideoPort(int videoPort) {
+        this.videoPort = videoPort;
+    }
+
+    public String getMqttVideoPub() {
+        return mqttVideoPub;
+    }
+
+    public void setMqttVideoPub(String mqttVideoPub) {
+        this.mqttVideoPub = mqttVideoPub;
+    }
+
+    public long getVideoSnapshotInterval() {
+        return videoSnapshotInterval;
+    }
+
+    public void setVideoSnapshotInterval(long videoSnapshotInterval) {
+        this.videoSnapshotInterval = videoSnapshotInterval;
+    }
+
+    public String getVideoRecordDir() {
+        return videoRecordDir;
+    }
+
+    public void setVideoRecordDir(String videoRecordDir) {
+        this.videoRecordDir = videoRecordDir;
+    }
+
+    public long getVideoSegmentLength() {
+        return videoSegmentLength;
+    }
+
+    public void setVideoSegmentLength(long videoSegmentLength) {
+        this.videoSegmentLength = videoSegmentLength;
+    }
+
 }
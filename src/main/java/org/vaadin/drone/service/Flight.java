@@ -0,0 +1,46 @@
+package org.vaadin.drone.service;
+
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+
+/**
+ * One flight of the drone, from takeoff to landing.
+ *
+ * @author Sami Ekblad
+ */
+@Entity
+public class Flight {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    private long startTime;
+    private Long endTime;
+
+    protected Flight() {
+    }
+
+    public Flight(long startTime) {
+        this.startTime = startTime;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public long getStartTime() {
+        return startTime;
+    }
+
+    public Long getEndTime() {
+        return endTime;
+    }
+
+    public void setEndTime(Long endTime) {
+        this.endTime = endTime;
+    }
+
+}
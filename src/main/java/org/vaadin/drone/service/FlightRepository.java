@@ -0,0 +1,12 @@
+package org.vaadin.drone.service;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+
+/**
+ * Stored flights.
+ *
+ * @author Sami Ekblad
+ */
+public interface FlightRepository extends JpaRepository<Flight, Long> {
+
+}
@@ -0,0 +1,165 @@
+package org.vaadin.drone.service;
+
+/**
+ * Derived kinematic state from navdata.
+ *
+ * Integrates the body frame velocities rotated by the heading into a
+ * dead-reckoned position relative to where navdata started, derives vertical
+ * speed from altitude and tracks smoothed acceleration from the velocity
+ * changes. The state is a fixed set of primitives updated in place and copied
+ * into the sample, so consumers in other threads see values that belong to
+ * that sample. Adding a sample never allocates.
+ *
+ * Dead reckoning drifts over time: the position is only useful for short term
+ * motion, not for navigation.
+ *
+ * Not thread safe for updates: samples are expected to arrive from the
+ * navdata thread. The results can be read from any thread.
+ *
+ * @author Sami Ekblad
+ */
+public class KinematicsEngine implements ARDrone.DroneStateCallback {
+
+    /* Longer gaps are not integrated over */
+    private static final long MAX_GAP = 500000000L;
+    /* Smoothing factor for the derived rates */
+    private static final double ALPHA = 0.2;
+    private static final double MILLIDEGREES_TO_RADIANS = Math.PI / 180000;
+
+    private boolean initialized;
+    private long lastTime;
+    private double lastVx;
+    private double lastVy;
+    private double lastVz;
+    private double lastAltitude;
+
+    /* Results, read from other threads */
+    private volatile double x;
+    private volatile double y;
+    private volatile double distance;
+    private volatile double verticalSpeed;
+    private volatile double ax;
+    private volatile double ay;
+    private volatile double az;
+
+    @Override
+    public void onDroneStateChanged(NavData latestState) {
+        add(latestState, latestState.getReceiveNanos());
+    }
+
+    /**
+     * Add a sample received at given time. The state after it is stored in
+     * the sample.
+     *
+     * @param d
+     * @param timeNanos Receive time as System.nanoTime().
+     */
+    public void add(NavData d, long timeNanos) {
+        double vx = d.getVx();
+        double vy = d.getVy();
+        double vz = d.getVz();
+        double altitude = d.getAltitude();
+        long gap = timeNanos - lastTime;
+        if (initialized && gap > 0 && gap <= MAX_GAP) {
+            double dt = gap / 1e9;
+
+            // Body frame to world frame, trapezoidal over the interval
+            double heading = d.getPsi() * MILLIDEGREES_TO_RADIANS;
+            double cos = Math.cos(heading);
+            double sin = Math.sin(heading);
+            double bx = (vx + lastVx) / 2;
+            double by = (vy + lastVy) / 2;
+            double dx = (bx * cos - by * sin) * dt;
+            double dy = (bx * sin + by * cos) * dt;
+            x += dx;
+            y += dy;
+            distance += Math.sqrt(dx * dx + dy * dy);
+
+            verticalSpeed += ALPHA * ((altitude - lastAltitude) / dt - verticalSpeed);
+            ax += ALPHA * ((vx - lastVx) / dt - ax);
+            ay += ALPHA * ((vy - lastVy) / dt - ay);
+            az += ALPHA * ((vz - lastVz) / dt - az);
+        }
+        if (gap > 0 || !initialized) {
+            initialized = true;
+            lastTime = timeNanos;
+            lastVx = vx;
+            lastVy = vy;
+            lastVz = vz;
+            lastAltitude = altitude;
+        }
+        d.setKinematics(x, y, distance, verticalSpeed, ax, ay, az);
+    }
+
+    /**
+     * Reset the position to origin.
+     */
+    public void resetPosition() {
+        x = 0;
+        y = 0;
+        distance = 0;
+    }
+
+    /**
+     * Position in the direction of heading zero, mm.
+     *
+     * @return
+     */
+    public double getX() {
+        return x;
+    }
+
+    /**
+     * Position to the right of heading zero, mm.
+     *
+     * @return
+     */
+    public double getY() {
+        return y;
+    }
+
+    /**
+     * Horizontal distance travelled, mm.
+     *
+     * @return
+     */
+    public double getDistance() {
+        return distance;
+    }
+
+    /**
+     * Vertical speed from altitude changes, altitude units per second.
+     *
+     * @return
+     */
+    public double getVerticalSpeed() {
+        return verticalSpeed;
+    }
+
+    /**
+     * Forward acceleration in body frame, mm/s².
+     *
+     * @return
+     */
+    public double getAx() {
+        return ax;
+    }
+
+    /**
+     * Sideways acceleration in body frame, mm/s².
+     *
+     * @return
+     */
+    public double getAy() {
+        return ay;
+    }
+
+    /**
+     * Vertical acceleration, mm/s².
+     *
+     * @return
+     */
+    public double getAz() {
+        return az;
+    }
+}
@@ -0,0 +1,108 @@
+package org.vaadin.drone.service;
+
+/**
+ * Navdata link supervision.
+ *
+ * Keeps a smoothed mean and deviation of the packet inter-arrival time, in the
+ * same way TCP estimates its retransmission timeout, and derives the receive
+ * timeout from them. While the link is down, the re-init interval backs off
+ * exponentially.
+ *
+ * Not thread safe: used from the navdata thread only.
+ *
+ * @author Sami Ekblad
+ */
+public class LinkSupervisor {
+
+    /* Wi-Fi easily stalls for a couple of hundred milliseconds */
+    private static final long MIN_TIMEOUT = 500;
+    private static final long MAX_TIMEOUT = 3000;
+    private static final long MIN_BACKOFF = 50;
+    private static final long MAX_BACKOFF = 1000;
+
+    private double mean;
+    private double deviation;
+    private long lastPacket = -1;
+    private boolean up;
+    private long downSince;
+    private long backoff = MIN_BACKOFF;
+
+    /**
+     * Record a received packet.
+     *
+     * @param nowMillis
+     * @return length of the outage in milliseconds if the link was down, 0 for
+     * the first packet, -1 otherwise
+     */
+    public long onPacket(long nowMillis) {
+        if (lastPacket >= 0 && up) {
+            double gap = nowMillis - lastPacket;
+            if (mean == 0) {
+                mean = gap;
+                deviation = gap / 2;
+            } else {
+                deviation += (Math.abs(gap - mean) - deviation) / 4;
+                mean += (gap - mean) / 8;
+            }
+        }
+        boolean first = lastPacket < 0;
+        lastPacket = nowMillis;
+        if (up) {
+            return -1;
+        }
+        up = true;
+        backoff = MIN_BACKOFF;
+        // Waiting for the drone to start is not an outage
+        return first ? 0 : nowMillis - downSince;
+    }
+
+    /**
+     * Record a receive timeout.
+     *
+     * @param nowMillis
+     * @return true if the link went down
+     */
+    public boolean onTimeout(long nowMillis) {
+        if (up) {
+            up = false;
+            downSince = lastPacket >= 0 ? lastPacket : nowMillis;
+            backoff = MIN_BACKOFF;
+            return true;
+        }
+        backoff = Math.min(MAX_BACKOFF, backoff * 2);
+        return false;
+    }
+
+    /**
+     * How long to wait for the next packet before calling
+     * {@link #onTimeout(long)}.
+     *
+     * @return
+     */
+    public long getTimeout() {
+        if (!up) {
+            return backoff;
+        }
+        if (mean == 0) {
+            return MAX_TIMEOUT;
+        }
+        return Math.max(MIN_TIMEOUT, Math.min(MAX_TIMEOUT, (long) (mean + 4 * deviation)));
+    }
+
+    /**
+     * Time of the last packet before the link went down.
+     *
+     * @return
+     */
+    public long getDownSince() {
+        return downSince;
+    }
+
+    public boolean isUp() {
+        return up;
+    }
+
+    public double getMeanInterval() {
+        return mean;
+    }
+}
@@ -7,18 +7,42 @@ package org.vaadin.drone.service;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
 import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import org.eclipse.paho.client.mqttv3.IMqttDeliveryToken;
-import org.eclipse.paho.client.mqttv3.MqttCallback;
+import org.eclipse.paho.client.mqttv3.MqttCallbackExtended;
 import org.eclipse.paho.client.mqttv3.MqttClient;
+import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
 import org.eclipse.paho.client.mqttv3.MqttException;
 import org.eclipse.paho.client.mqttv3.MqttMessage;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.vaadin.drone.service.shm.SharedStateWriter;
+import org.vaadin.drone.service.sink.BatchFrameSink;
+import org.vaadin.drone.service.sink.ServerSentEventsSink;
+import org.vaadin.drone.service.sink.SinkDispatcher;
+import org.vaadin.drone.service.sink.UdpMulticastSink;
+import org.vaadin.drone.service.video.FramePool;
+import org.vaadin.drone.service.video.KeyframeSnapshotSink;
+import org.vaadin.drone.service.video.SegmentedFileRecorder;
+import org.vaadin.drone.service.video.VideoStream;
 
 /**
  * Bridge between MTQQ and AR.Drone2.
@@ -30,11 +54,41 @@ import org.springframework.stereotype.Service;
 @Service
 public class MQTTBridge {
 
+    private static final Logger LOG = Logger.getLogger(MQTTBridge.class.getName());
+
     @Autowired
     private DroneMqttSettings settings;
 
+    @Autowired
+    private TelemetryWriter telemetryWriter;
+
     private MqttClient mqtt;
+    private MqttPublisher publisher;
     private ARDrone drone;
+    private TelemetryRingStore store;
+    private NavdataNegotiator negotiator;
+    private SinkDispatcher sinks;
+    private VideoStream video;
+    private SharedStateWriter shm;
+    private Thread connectThread;
+    /* History queries and subscriptions, handled outside the MQTT callback thread */
+    private final ThreadPoolExecutor requests = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(REQUEST_QUEUE), r -> {
+                Thread t = new Thread(r, "mqtt-requests");
+                t.setDaemon(true);
+                return t;
+            });
+
+    private static final int VIDEO_FRAMES = 32;
+    private static final int VIDEO_FRAME_CAPACITY = 256 * 1024;
+    private static final int VIDEO_SINK_QUEUE = 8;
+    private static final int SINK_UDP_TTL = 1;
+    private static final Gson GSON = new GsonBuilder().setDateFormat("yyyy-MM-dd HH:mm:ss:SSS").create();
+    private static final long CONNECT_RETRY_MIN = 1000;
+    private static final long CONNECT_RETRY_MAX = 30000;
+    private static final int BATCH_QUEUE_FRAMES = 4;
+    private static final long SHUTDOWN_TIMEOUT = 1000;
+    private static final int REQUEST_QUEUE = 64;
 
     public MQTTBridge() {
     }
@@ -43,14 +97,121 @@ public class MQTTBridge {
     public void openConnection() {
         try {
             mqtt = new MqttClient(settings.getMqttUrl(), settings.getMqttId());
-            mqtt.connect();
+            mqtt.setCallback(new MqttCallBack());
 
-            drone = new ARDrone(settings.getIp(), settings.getCmdPort(), settings.getNavPort());
-            drone.addCallback(e -> publish(settings.getMqttPub(), e));
+            // Telemetry is buffered until the broker is connected
+            String spillFile = settings.getMqttSpillFile();
+            publisher = new MqttPublisher(mqtt, new OfflineBuffer(settings.getMqttOfflineQueue(),
+                    spillFile != null && !spillFile.isEmpty() ? Paths.get(spillFile) : null, settings.getMqttSpillSize()),
+                    settings.getMqttDrainRate());
 
-            // Receive commands
-            mqtt.setCallback(new MqttCallBack());
-            mqtt.subscribe(settings.getMqttSub());
+            drone = new ARDrone(settings.getIp(), settings.getCmdPort(), settings.getNavPort(), settings.getCtrlPort());
+
+            // Derived state is updated from every packet and published with the samples,
+            // so it must be registered before the sinks
+            if (settings.isKinematics()) {
+                drone.addPacketCallback(new KinematicsEngine());
+            }
+            // Each consumer gets its own queue and thread
+            sinks = new SinkDispatcher();
+            sinks.add("mqtt", d -> publish(settings.getMqttPub(), d), settings.getSinkQueue(), drone::getNavdataInterval);
+            // Optional local sinks, a failure must not keep commands from working
+            if (settings.getSinkUdpGroup() != null && !settings.getSinkUdpGroup().isEmpty()) {
+                try {
+                    sinks.add("udp", new UdpMulticastSink(InetAddress.getByName(settings.getSinkUdpGroup()), settings.getSinkUdpPort(), SINK_UDP_TTL),
+                            settings.getSinkQueue(), settings::getSinkUdpInterval);
+                } catch (IOException ex) {
+                    Logger.getLogger(MQTTBridge.class.getName()).log(Level.WARNING, "UDP sink disabled", ex);
+                }
+            }
+            if (settings.getSinkSsePort() > 0) {
+                try {
+                    sinks.add("sse", new ServerSentEventsSink(settings.getSinkSsePort(), settings.getSinkQueue()),
+                            settings.getSinkQueue(), settings::getSinkSseInterval);
+                } catch (IOException ex) {
+                    Logger.getLogger(MQTTBridge.class.getName()).log(Level.WARNING, "SSE sink disabled", ex);
+                }
+            }
+            // Full rate in columnar frames for archival, with room for a few frames while the broker is slow
+            if (settings.getBatchSize() > 0) {
+                sinks.add("batch", new BatchFrameSink(this::publishBatch, settings.getBatchSize(), settings.getBatchInterval()),
+                        Math.max(settings.getSinkQueue(), BATCH_QUEUE_FRAMES * settings.getBatchSize()), () -> 0);
+            }
+            drone.addPacketCallback(sinks);
+
+            // Latest sample in shared memory for processes on this host
+            if (settings.getShmFile() != null && !settings.getShmFile().isEmpty()) {
+                try {
+                    shm = new SharedStateWriter(Paths.get(settings.getShmFile()));
+                    drone.addPacketCallback(shm);
+                } catch (IOException | UnsupportedOperationException ex) {
+                    Logger.getLogger(MQTTBridge.class.getName()).log(Level.WARNING, "Shared memory disabled", ex);
+                }
+            }
+            // The raw navdata carries the demo fields, other fields only when some consumer asks for them
+            int options = 1 << NavData.DEMO_TAG;
+            if (settings.getMqttLatencyPub() != null && !settings.getMqttLatencyPub().isEmpty()) {
+                // Clock offset estimation needs the drone time
+                options |= 1 << NavData.TIME_TAG;
+                drone.addCallback(e -> publishLatency());
+            }
+            drone.addLinkListener(new LinkStatePublisher());
+            drone.addStateBitListener(new StateBitPublisher());
+
+            // Threshold alerts, only transitions are published
+            if (!settings.getAlerts().isEmpty()) {
+                AlertEngine alerts = new AlertEngine(settings.getAlerts(), this::publishAlert);
+                options |= TelemetryField.getOptions(alerts.getFields());
+                drone.addPacketCallback(alerts);
+            }
+
+            // Summaries over time windows for consumers that don't need raw data
+            if (settings.getAggregateWindow() > 0) {
+                long slide = settings.getAggregateSlide() > 0 ? settings.getAggregateSlide() : settings.getAggregateWindow();
+                TelemetryField[] fields = TelemetryField.parse(settings.getAggregateFields());
+                options |= TelemetryField.getOptions(fields);
+                TelemetryAggregator aggregator = new TelemetryAggregator(settings.getAggregateWindow(), slide,
+                        s -> publishSummary(settings.getMqttAggregatePub(), s), fields);
+                drone.addPacketCallback(aggregator);
+                drone.addLinkListener(aggregator);
+            }
+
+            // Recent history for late joiners, served over request/response topics
+            if (settings.getStoreRetention() > 0) {
+                TelemetryField[] fields = TelemetryField.parse(settings.getStoreFields());
+                options |= TelemetryField.getOptions(fields);
+                store = new TelemetryRingStore(settings.getStoreRetention(), settings.getStoreMaxRate(), fields);
+                drone.addPacketCallback(store);
+            }
+
+            // Flight history into the database
+            if (settings.isPersist()) {
+                // Every column is stored
+                options |= TelemetryField.getOptions(TelemetryField.values());
+                telemetryWriter.start(settings.getPersistBatchSize(), settings.getPersistFlushInterval(), settings.getPersistCapacity());
+                drone.addPacketCallback(telemetryWriter);
+            }
+
+            // Video snapshots and recording
+            if (settings.isVideo()) {
+                video = new VideoStream(new InetSocketAddress(settings.getIp(), settings.getVideoPort()),
+                        new FramePool(VIDEO_FRAMES, VIDEO_FRAME_CAPACITY), VIDEO_SINK_QUEUE);
+                video.addSink(new KeyframeSnapshotSink(publisher, settings.getMqttVideoPub(), settings.getVideoSnapshotInterval()));
+                if (settings.getVideoRecordDir() != null && !settings.getVideoRecordDir().isEmpty()) {
+                    video.addSink(new SegmentedFileRecorder(Paths.get(settings.getVideoRecordDir()), settings.getVideoSegmentLength()));
+                }
+                video.start();
+            }
+
+            // Navdata mode and options from what the subscribers declare
+            if (settings.isNavdataNegotiate()) {
+                // The bridge's own consumers always get their options, subscribers add to them
+                negotiator = new NavdataNegotiator((demo, mask) -> drone.cmdNavData(demo, mask), options);
+                negotiator.update();
+            }
+
+            // Receive commands once connected
+            connect();
 
             // Visual feedback of connection
             drone.cmdBlink(6);
@@ -60,15 +221,143 @@ public class MQTTBridge {
         }
     }
 
-    private void publish(String parentTopic, NavData navData) {
+    /* Automatic reconnect only covers a connection that once succeeded, so retry the first one here */
+    private void connect() {
+        MqttConnectOptions options = new MqttConnectOptions();
+        options.setAutomaticReconnect(true);
+        connectThread = new Thread(() -> {
+            long delay = CONNECT_RETRY_MIN;
+            while (!Thread.currentThread().isInterrupted()) {
+                try {
+                    mqtt.connect(options);
+                    return;
+                } catch (MqttException ex) {
+                    Logger.getLogger(MQTTBridge.class.getName()).log(Level.WARNING,
+                            "MQTT: connect to " + settings.getMqttUrl() + " failed, retrying in " + delay + " ms: " + ex.getMessage());
+                }
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                delay = Math.min(CONNECT_RETRY_MAX, delay * 2);
+            }
+        }, "mqtt-connect");
+        connectThread.setDaemon(true);
+        connectThread.start();
+    }
+
+    /**
+     * Stop receiving navdata and publish what is still queued, including the
+     * last partial batch frame.
+     */
+    @PreDestroy
+    public void close() {
+        if (connectThread != null) {
+            connectThread.interrupt();
+        }
+        requests.shutdownNow();
+        if (drone != null) {
+            drone.close();
+        }
+        if (video != null) {
+            video.stop();
+        }
+        if (sinks != null) {
+            sinks.close();
+        }
+        if (shm != null) {
+            try {
+                shm.close();
+            } catch (IOException ex) {
+                Logger.getLogger(MQTTBridge.class.getName()).log(Level.WARNING, "Failed to close shared memory", ex);
+            }
+        }
+        if (publisher != null) {
+            publisher.close(SHUTDOWN_TIMEOUT);
+        }
+        try {
+            if (mqtt != null && mqtt.isConnected()) {
+                mqtt.disconnect(SHUTDOWN_TIMEOUT);
+            }
+        } catch (MqttException ex) {
+            Logger.getLogger(MQTTBridge.class.getName()).log(Level.WARNING, "MQTT: disconnect failed", ex);
+        }
+    }
+
+    private void subscribe() throws MqttException {
+        mqtt.subscribe(settings.getMqttSub());
+        // Off the MQTT callback thread, so that commands never wait behind them
+        if (store != null) {
+            mqtt.subscribe(settings.getMqttQuerySub(), (topic, mm) -> submitRequest(topic, () -> handleQuery(topic, mm)));
+        }
+        if (negotiator != null) {
+            mqtt.subscribe(settings.getMqttSubscribeSub(), (topic, mm) -> submitRequest(topic, () -> handleSubscribe(topic, mm)));
+        }
+    }
+
+    private void submitRequest(String topic, Runnable request) {
+        try {
+            requests.execute(request);
+        } catch (RejectedExecutionException ex) {
+            Logger.getLogger(MQTTBridge.class.getName()).log(Level.WARNING, "Too many pending requests, dropped " + topic);
+        }
+    }
+
+    /**
+     * Register the fields a subscriber consumes. The client id is the last
+     * level of the topic and the payload is a JSON object with 'fields' (array
+     * of field names or "*" for full navdata). An empty payload removes the
+     * subscriber.
+     */
+    private void handleSubscribe(String topic, MqttMessage mm) {
+        String clientId = topic.substring(topic.lastIndexOf("/") + 1);
+        String payload = new String(mm.getPayload()).trim();
+        if (payload.isEmpty()) {
+            negotiator.unsubscribe(clientId);
+            return;
+        }
+        try {
+            JsonArray names = new JsonParser().parse(payload).getAsJsonObject().getAsJsonArray("fields");
+            List<String> fields = new ArrayList<>();
+            if (names != null) {
+                names.forEach(n -> fields.add(n.getAsString()));
+            }
+            negotiator.subscribe(clientId, fields);
+        } catch (RuntimeException ex) {
+            Logger.getLogger(MQTTBridge.class.getName()).log(Level.WARNING, "Invalid subscription from " + clientId + ": " + payload, ex);
+        }
+    }
+
+    /**
+     * Navdata as published in JSON mode.
+     *
+     * @param navData
+     * @return
+     */
+    public static JsonObject toJson(NavData navData) {
+        JsonObject json = GSON.toJsonTree(navData).getAsJsonObject();
+        // Snapshot taken in the navdata thread, so it matches this sample
+        if (navData.hasKinematics()) {
+            json.addProperty("x", navData.getX());
+            json.addProperty("y", navData.getY());
+            json.addProperty("distance", navData.getDistance());
+            json.addProperty("verticalSpeed", navData.getVerticalSpeed());
+            json.addProperty("ax", navData.getAx());
+            json.addProperty("ay", navData.getAy());
+            json.addProperty("az", navData.getAz());
+        }
+        return json;
+    }
 
-        Gson b = new GsonBuilder().setDateFormat("yyyy-MM-dd HH:mm:ss:SSS").create();
-        JsonObject json = b
-                .toJsonTree(navData).getAsJsonObject();
+    private void publish(String parentTopic, NavData navData) {
+        JsonObject json = toJson(navData);
         if (isPublishJson()) {
             try {
-                mqtt.publish(parentTopic, new MqttMessage(b.toJson(json).getBytes()));
-                Logger.getLogger(MQTTBridge.class.getName()).log(Level.FINE, "MQTT: publish " + parentTopic + "=" + json.toString());
+                publisher.publish(parentTopic, GSON.toJson(json).getBytes());
+                if (LOG.isLoggable(Level.FINE)) {
+                    LOG.log(Level.FINE, "MQTT: publish " + parentTopic + "=" + json.toString());
+                }
             } catch (MqttException ex) {
                 Logger.getLogger(MQTTBridge.class.getName()).log(Level.SEVERE, null, ex);
             }
@@ -78,8 +367,10 @@ public class MQTTBridge {
                 try {
                     String k = "/" + p.getKey().toUpperCase();
                     String v = p.getValue().toString();
-                    mqtt.publish(parentTopic + p.getKey(), new MqttMessage(v.getBytes()));
-                    Logger.getLogger(MQTTBridge.class.getName()).log(Level.FINE, "MQTT: publish " + parentTopic + k + "=" + v);
+                    publisher.publish(parentTopic + p.getKey(), v.getBytes());
+                    if (LOG.isLoggable(Level.FINE)) {
+                        LOG.log(Level.FINE, "MQTT: publish " + parentTopic + k + "=" + v);
+                    }
                 } catch (MqttException ex) {
                     Logger.getLogger(MQTTBridge.class.getName()).log(Level.SEVERE, null, ex);
                 }
@@ -89,27 +380,197 @@ public class MQTTBridge {
 
     }
 
+    private void publishSummary(String topic, TelemetryAggregator.Summary summary) {
+        JsonObject json = new JsonObject();
+        json.addProperty("start", summary.getStart());
+        json.addProperty("end", summary.getEnd());
+        json.addProperty("count", summary.getCount());
+        for (int i = 0; i < summary.getFieldCount() && summary.getCount() > 0; i++) {
+            JsonObject field = new JsonObject();
+            field.addProperty("min", summary.getMin(i));
+            field.addProperty("max", summary.getMax(i));
+            field.addProperty("mean", summary.getMean(i));
+            field.addProperty("last", summary.getLast(i));
+            json.add(summary.getField(i).getKey(), field);
+        }
+        publisher.publishLater(topic, json.toString().getBytes(), false);
+        if (LOG.isLoggable(Level.FINE)) {
+            LOG.log(Level.FINE, "MQTT: publish " + topic + "=" + json.toString());
+        }
+    }
+
+    /**
+     * Answer a history query. The request id is the last level of the request
+     * topic and the response is published under 'mqttQueryPub' with the same
+     * id. Payload is a JSON object with optional 'from' and 'to' (epoch ms) or
+     * 'last' (ms before 'to'), 'step' (ms) and 'fields' (array of field names).
+     */
+    private void handleQuery(String topic, MqttMessage mm) {
+        String requestId = topic.substring(topic.lastIndexOf("/") + 1);
+        long now = System.currentTimeMillis();
+        try {
+            String payload = new String(mm.getPayload()).trim();
+            JsonObject req = payload.isEmpty() ? new JsonObject() : new JsonParser().parse(payload).getAsJsonObject();
+            long to = req.has("to") ? req.get("to").getAsLong() : now;
+            long from = req.has("last") ? to - req.get("last").getAsLong()
+                    : req.has("from") ? req.get("from").getAsLong() : now - store.getRetentionMillis();
+            long step = req.has("step") ? req.get("step").getAsLong() : 0;
+            TelemetryField[] fields = store.getFields();
+            if (req.has("fields")) {
+                JsonArray names = req.getAsJsonArray("fields");
+                fields = new TelemetryField[names.size()];
+                for (int i = 0; i < fields.length; i++) {
+                    fields[i] = TelemetryField.fromKey(names.get(i).getAsString());
+                }
+            }
+
+            TelemetryRingStore.Result r = store.query(from, to, step, now, System.nanoTime(), fields);
+            JsonObject json = new JsonObject();
+            JsonArray time = new JsonArray();
+            JsonArray seq = new JsonArray();
+            for (int k = 0; k < r.size(); k++) {
+                time.add(new JsonPrimitive(r.getTime()[k]));
+                seq.add(new JsonPrimitive(r.getSequence()[k]));
+            }
+            json.add("time", time);
+            json.add("sequenceNumber", seq);
+            for (int f = 0; f < r.getFields().length; f++) {
+                JsonArray values = new JsonArray();
+                for (float v : r.getValues(f)) {
+                    values.add(new JsonPrimitive(v));
+                }
+                json.add(r.getFields()[f].getKey(), values);
+            }
+            publisher.publish(settings.getMqttQueryPub() + "/" + requestId, json.toString().getBytes());
+        } catch (MqttException | RuntimeException ex) {
+            Logger.getLogger(MQTTBridge.class.getName()).log(Level.WARNING, "Query " + requestId + " failed", ex);
+        }
+    }
+
     private boolean isPublishJson() {
         return settings.isJsonMode();
     }
 
+    /**
+     * Publishes navdata link state changes.
+     */
+    private class LinkStatePublisher implements ARDrone.LinkListener {
+
+        @Override
+        public void onLinkDown(long lastPacketTime) {
+            JsonObject json = new JsonObject();
+            json.addProperty("state", "DOWN");
+            json.addProperty("time", lastPacketTime);
+            publishLinkState(json);
+        }
+
+        @Override
+        public void onLinkUp(long outage) {
+            JsonObject json = new JsonObject();
+            json.addProperty("state", "UP");
+            json.addProperty("time", System.currentTimeMillis());
+            json.addProperty("outage", outage);
+            publishLinkState(json);
+        }
+
+        private void publishLinkState(JsonObject json) {
+            publisher.publishLater(settings.getMqttLinkPub(), json.toString().getBytes(), true);
+        }
+    }
+
+    private void publishLatency() {
+        ClockOffsetEstimator clock = drone.getClock();
+        if (clock.getSamples() == 0) {
+            return;
+        }
+        JsonObject json = new JsonObject();
+        json.addProperty("time", System.currentTimeMillis());
+        json.addProperty("latency", clock.getLatency());
+        json.addProperty("meanLatency", Math.round(clock.getMeanLatency()));
+        json.addProperty("jitter", Math.round(clock.getJitter()));
+        json.addProperty("offset", clock.getOffset());
+        publisher.publishLater(settings.getMqttLatencyPub(), json.toString().getBytes(), false);
+    }
+
+    private void publishBatch(byte[] frame) {
+        try {
+            publisher.publish(settings.getMqttBatchPub(), frame);
+        } catch (MqttException ex) {
+            Logger.getLogger(MQTTBridge.class.getName()).log(Level.SEVERE, null, ex);
+        }
+    }
+
+    private void publishAlert(AlertRule rule, boolean active, double value, long time) {
+        JsonObject json = new JsonObject();
+        json.addProperty("name", rule.getName());
+        json.addProperty("field", rule.getField());
+        json.addProperty("active", active);
+        json.addProperty("value", value);
+        json.addProperty("threshold", rule.getThreshold());
+        json.addProperty("time", time);
+        publisher.publishLater(settings.getMqttAlertPub() + "/" + rule.getName(), json.toString().getBytes(), true);
+    }
+
+    /**
+     * Publishes navdata state bit changes, one topic per bit.
+     */
+    private class StateBitPublisher implements ARDrone.StateBitListener {
+
+        /* Bits that toggle during normal operation: CONTROL_RECEIVED, TIMER_ELAPSED and the watchdogs */
+        private static final int TRANSIENT_BITS = 1 << 6 | 1 << 17 | 1 << 28 | 1 << 29;
+
+        @Override
+        public void onStateBitChanged(int bit, boolean value, boolean initial, long sequence, long time) {
+            String name = NavData.getStateBitName(bit);
+            JsonObject json = new JsonObject();
+            json.addProperty("bit", bit);
+            json.addProperty("name", name);
+            if (!initial) {
+                json.addProperty("old", !value);
+            }
+            json.addProperty("new", value);
+            json.addProperty("sequence", sequence);
+            json.addProperty("time", time);
+            publisher.publishLater(settings.getMqttStatePub() + "/" + name, json.toString().getBytes(),
+                    (TRANSIENT_BITS & (1 << bit)) == 0);
+        }
+    }
+
     /**
      * Callback for receiving the drone commands over MQTT.
      */
-    private class MqttCallBack implements MqttCallback {
+    private class MqttCallBack implements MqttCallbackExtended {
 
         public MqttCallBack() {
         }
 
         @Override
         public void connectionLost(Throwable thrwbl) {
-            Logger.getLogger(MQTTBridge.class.getName()).log(Level.FINE, "MQTT: connectionLost");
+            Logger.getLogger(MQTTBridge.class.getName()).log(Level.WARNING, "MQTT: connectionLost", thrwbl);
+        }
+
+        @Override
+        public void connectComplete(boolean reconnect, String serverURI) {
+            Logger.getLogger(MQTTBridge.class.getName()).log(Level.INFO, "MQTT: connectComplete " + serverURI);
+            if (publisher != null) {
+                // Commands first, then the telemetry backlog
+                publisher.reconnected(() -> {
+                    try {
+                        subscribe();
+                    } catch (MqttException ex) {
+                        Logger.getLogger(MQTTBridge.class.getName()).log(Level.SEVERE, "MQTT: subscribe failed", ex);
+                    }
+                });
+            }
         }
 
         @Override
         public void messageArrived(String topic, MqttMessage mm) throws Exception {
+            long arrival = System.nanoTime();
             String payload = new String(mm.getPayload());
-            Logger.getLogger(MQTTBridge.class.getName()).log(Level.FINE, "MQTT: messageArrived " + topic + ":" + payload);
+            if (LOG.isLoggable(Level.FINE)) {
+                LOG.log(Level.FINE, "MQTT: messageArrived " + topic + ":" + payload);
+            }
 
             String cmdName = topic.substring(topic.lastIndexOf("/") + 1);
             ARDrone.AT cmd = null;
@@ -118,17 +579,15 @@ public class MQTTBridge {
             } catch (Exception ignored) {
             }
             if (cmd != null) {
-                drone.sendCommand(cmd, payload);
+                drone.sendCommand(cmd, payload, arrival);
             } else if (TRIM_CMD.equals(cmdName)) {
-                drone.cmdReset();
+                drone.cmdTrim();
             } else if (RESET_CMD.equals(cmdName)) {
-                drone.cmdReset();
+                drone.cmdReset(arrival);
             } else if (TAKEOFF_CMD.equals(cmdName)) {
-                drone.cmdTakeoff();
+                drone.cmdTakeoff(arrival);
             } else if (LAND_CMD.equals(cmdName)) {
-                drone.cmdLand();
-            } else if (TRIM_CMD.equals(cmdName)) {
-                drone.cmdReset();
+                drone.cmdLand(arrival);
             } else if (NAVDATA_CMD.equals(cmdName)) {
                 String type = payload.toLowerCase();
                 if ("stop".equals(type)) {
@@ -139,7 +598,14 @@ public class MQTTBridge {
                         drone.setNavdataInterval(interval);
                     } catch (NumberFormatException ignored) {
                     }
-                    if ("demo".equals(type)) {
+                    if (negotiator != null) {
+                        // Full navdata on request is one more subscriber, so the others keep their options
+                        if ("demo".equals(type)) {
+                            negotiator.unsubscribe(NAVDATA_CMD);
+                        } else if ("all".equals(type)) {
+                            negotiator.subscribe(NAVDATA_CMD, Collections.singletonList(NavdataNegotiator.ALL_FIELDS));
+                        }
+                    } else if ("demo".equals(type)) {
                         drone.cmdNavData(true);
                     } else if ("all".equals(type)) {
                         drone.cmdNavData(false);
@@ -157,7 +623,9 @@ public class MQTTBridge {
 
         @Override
         public void deliveryComplete(IMqttDeliveryToken imdt) {
-            Logger.getLogger(MQTTBridge.class.getName()).log(Level.FINE, "MQTT: deliveryComplete" + imdt);
+            if (LOG.isLoggable(Level.FINE)) {
+                LOG.log(Level.FINE, "MQTT: deliveryComplete" + imdt);
+            }
         }
     }
 
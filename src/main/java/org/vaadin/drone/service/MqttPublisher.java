@@ -0,0 +1,223 @@
+package org.vaadin.drone.service;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.eclipse.paho.client.mqttv3.MqttClient;
+import org.eclipse.paho.client.mqttv3.MqttException;
+import org.eclipse.paho.client.mqttv3.MqttMessage;
+
+/**
+ * Publishes telemetry over MQTT, buffering it while the broker is not
+ * connected.
+ *
+ * After reconnect the buffered messages are published in a background thread
+ * at a limited rate, so they do not compete with live telemetry and commands.
+ * Live messages are published directly while the backlog drains.
+ *
+ * Events raised in the navdata thread are published with
+ * {@link #publishLater(String, byte[], boolean)} from a thread of their own,
+ * so a slow broker does not delay navdata decoding.
+ *
+ * @author Sami Ekblad
+ */
+public class MqttPublisher {
+
+    private final MqttClient mqtt;
+    private final OfflineBuffer buffer;
+    private final int drainRate;
+    private final ArrayBlockingQueue<Event> events = new ArrayBlockingQueue<>(EVENT_QUEUE);
+    private final Thread eventThread;
+    private Thread drainThread;
+    private final AtomicLong eventsDropped = new AtomicLong();
+
+    private static final int EVENT_QUEUE = 1024;
+    private static final Event STOP = new Event(null, null, false);
+
+    /**
+     * Create new publisher.
+     *
+     * @param mqtt
+     * @param buffer Buffer for messages published while disconnected.
+     * @param drainRate Messages per second published from the buffer after
+     * reconnect.
+     */
+    public MqttPublisher(MqttClient mqtt, OfflineBuffer buffer, int drainRate) {
+        this.mqtt = mqtt;
+        this.buffer = buffer;
+        this.drainRate = drainRate;
+        eventThread = new Thread(this::eventLoop, "mqtt-events");
+        eventThread.setDaemon(true);
+        eventThread.start();
+    }
+
+    public void publish(String topic, byte[] payload) throws MqttException {
+        publish(topic, payload, false);
+    }
+
+    /**
+     * Publish or buffer a message.
+     *
+     * @param topic
+     * @param payload
+     * @param retained
+     * @throws MqttException if publishing failed for other reason than lost
+     * connection
+     */
+    public void publish(String topic, byte[] payload, boolean retained) throws MqttException {
+        DroneEvents.MqttPublish event = new DroneEvents.MqttPublish();
+        event.begin();
+        boolean buffered = !mqtt.isConnected();
+        try {
+            if (!buffered) {
+                MqttMessage msg = new MqttMessage(payload);
+                msg.setRetained(retained);
+                mqtt.publish(topic, msg);
+            }
+        } catch (MqttException ex) {
+            if (mqtt.isConnected()) {
+                throw ex;
+            }
+            buffered = true;
+        } finally {
+            if (buffered) {
+                buffer.offer(topic, payload, retained);
+            }
+            event.end();
+            if (event.shouldCommit()) {
+                event.topic = topic;
+                event.size = payload.length;
+                event.buffered = buffered;
+                event.commit();
+            }
+        }
+    }
+
+    /**
+     * Publish a message from the event thread. Messages are published in the
+     * order they are queued.
+     *
+     * @param topic
+     * @param payload
+     * @param retained
+     * @return false if the event queue was full and the message was dropped
+     */
+    public boolean publishLater(String topic, byte[] payload, boolean retained) {
+        if (events.offer(new Event(topic, payload, retained))) {
+            return true;
+        }
+        if (eventsDropped.getAndIncrement() == 0) {
+            Logger.getLogger(MqttPublisher.class.getName()).log(Level.WARNING, "Event queue full, dropping " + topic);
+        }
+        return false;
+    }
+
+    /**
+     * Number of messages dropped because the event queue was full.
+     *
+     * @return
+     */
+    public long getEventsDropped() {
+        return eventsDropped.get();
+    }
+
+    /**
+     * Publish the queued events and stop the event thread.
+     *
+     * @param timeoutMillis Time to wait for the queued events.
+     */
+    public void close(long timeoutMillis) {
+        try {
+            events.put(STOP);
+            eventThread.join(timeoutMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void eventLoop() {
+        try {
+            Event e;
+            while ((e = events.take()) != STOP) {
+                try {
+                    publish(e.topic, e.payload, e.retained);
+                } catch (MqttException ex) {
+                    Logger.getLogger(MqttPublisher.class.getName()).log(Level.SEVERE, "Failed to publish " + e.topic, ex);
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Start publishing the buffered messages after (re)connect.
+     *
+     * @param beforeDrain Run in the drain thread before any buffered message
+     * is published, e.g. to restore subscriptions.
+     */
+    public synchronized void reconnected(Runnable beforeDrain) {
+        if (drainThread != null && drainThread.isAlive()) {
+            drainThread.interrupt();
+        }
+        drainThread = new Thread(() -> {
+            beforeDrain.run();
+            drain();
+        }, "mqtt-drain");
+        drainThread.setDaemon(true);
+        drainThread.start();
+    }
+
+    private void drain() {
+        int count = buffer.size();
+        if (count == 0) {
+            return;
+        }
+        Logger.getLogger(MqttPublisher.class.getName()).log(Level.INFO, "Publishing " + count + " buffered messages");
+        long interval = 1000000000L / Math.max(1, drainRate);
+        long next = System.nanoTime();
+        OfflineBuffer.Message m;
+        while (mqtt.isConnected() && !Thread.currentThread().isInterrupted() && (m = buffer.poll()) != null) {
+            try {
+                MqttMessage msg = new MqttMessage(m.getPayload());
+                msg.setRetained(m.isRetained());
+                mqtt.publish(m.getTopic(), msg);
+            } catch (MqttException ex) {
+                // Keep it first in line for the next reconnect
+                buffer.requeue(m);
+                Logger.getLogger(MqttPublisher.class.getName()).log(Level.FINE, "Buffered publish failed", ex);
+                return;
+            }
+            next += interval;
+            long wait = next - System.nanoTime();
+            if (wait > 0) {
+                try {
+                    Thread.sleep(wait / 1000000, (int) (wait % 1000000));
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+        if (buffer.getDropped() > 0) {
+            Logger.getLogger(MqttPublisher.class.getName()).log(Level.WARNING, buffer.getDropped() + " messages dropped while disconnected");
+        }
+    }
+
+    public OfflineBuffer getBuffer() {
+        return buffer;
+    }
+
+    private static class Event {
+
+        private final String topic;
+        private final byte[] payload;
+        private final boolean retained;
+
+        private Event(String topic, byte[] payload, boolean retained) {
+            this.topic = topic;
+            this.payload = payload;
+            this.retained = retained;
+        }
+    }
+}
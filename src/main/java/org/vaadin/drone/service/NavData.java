@@ -11,6 +11,18 @@ import java.util.zip.CRC32;
 public class NavData {
 
     public static NavData create(DatagramPacket packet) {
+        return create(packet, -1);
+    }
+
+    /**
+     * Parse a navdata packet.
+     *
+     * @param packet
+     * @param optionMask Bit mask of the option tags to parse, others are
+     * skipped.
+     * @return
+     */
+    public static NavData create(DatagramPacket packet, int optionMask) {
         ByteBuffer buffer = ByteBuffer.wrap(packet.getData(), 0,
                 packet.getLength());
         buffer.order(ByteOrder.LITTLE_ENDIAN);
@@ -26,7 +38,9 @@ public class NavData {
             ByteBuffer optionData = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
             payloadSize = Math.max(0,Math.min(payloadSize, optionData.remaining())); // added due to new AR.Drone firmware version as of 06.01.2014 (don't know which version > 2.3.3 and < 2.4.8 caused the change)
             optionData.limit(payloadSize);
-            parseOption(tag, optionData, d);
+            if (tag >= 32 || (optionMask & (1 << tag)) != 0) {
+                parseOption(tag, optionData, d);
+            }
             buffer.position(buffer.position() + payloadSize);
         }
 
@@ -39,8 +53,8 @@ public class NavData {
 
     // supported option tags
     private static final int CKS_TAG = -1;
-    private static final int DEMO_TAG = 0;
-    private static final int TIME_TAG = 1;
+    static final int DEMO_TAG = 0;
+    static final int TIME_TAG = 1;
     private static final int RAW_MEASURES_TAG = 2;
     private static final int PHYS_MEASURES_TAG = 3;
     private static final int GYROS_OFFSETS_TAG = 4;
@@ -49,7 +63,7 @@ public class NavData {
     private static final int TRIMS_TAG = 7;
     private static final int RC_REFERENCES_TAG = 8;
     private static final int PWM_TAG = 9;
-    private static final int ALTITUDE_TAG = 10;
+    static final int ALTITUDE_TAG = 10;
     private static final int VISION_RAW_TAG = 11;
     private static final int VISION_OF_TAG = 12;
     private static final int VISION_TAG = 13;
@@ -65,9 +79,31 @@ public class NavData {
     private static final int WIND_TAG = 23;
     private static final int KALMAN_PRESSURE_TAG = 24;
     private static final int HDVIDEO_STREAM_TAG = 25;
-    private static final int WIFI_TAG = 26;
+    static final int WIFI_TAG = 26;
     private static final int ZIMMU_3000_TAG = 27;
 
+    /* Names of the state bits, by bit index. See SDK2.0, config.h */
+    private static final String[] STATE_BIT_NAMES = {
+        "FLYING", "VIDEO", "VISION", "CONTROL_ALGO",
+        "ALTITUDE_CONTROL", "USER_FEEDBACK", "CONTROL_RECEIVED", "CAMERA_READY",
+        "TRAVELLING", "USB_READY", "NAVDATA_DEMO", "NAVDATA_BOOTSTRAP",
+        "MOTORS_DOWN", "COMMUNICATION_LOST", "SOFTWARE_FAULT", "BATTERY_LOW",
+        "USER_EMERGENCY_LANDING", "TIMER_ELAPSED", "MAGNETO_CALIBRATION_NEEDED", "ANGLES_OUT_OF_RANGE",
+        "TOO_MUCH_WIND", "ULTRASOUND_DEAF", "CUTOUT", "PIC_VERSION_OK",
+        "AT_CODEC_THREAD", "NAVDATA_THREAD", "VIDEO_THREAD", "ACQUISITION_THREAD",
+        "CONTROL_WATCHDOG", "ADC_WATCHDOG", "COMMUNICATION_PROBLEM", "EMERGENCY"
+    };
+
+    /**
+     * Name of a state bit.
+     *
+     * @param bit Bit index 0-31.
+     * @return
+     */
+    public static String getStateBitName(int bit) {
+        return STATE_BIT_NAMES[bit];
+    }
+
     private final long sequenceNumber;
     private final int state;
     private final int vision;
@@ -76,9 +112,24 @@ public class NavData {
     private float phi;
     private int battery;
     private int altitude;
+    private float vx;
+    private float vy;
+    private float vz;
     private int linkQuality;
     private int checksum;
     private ControlState controlState;
+    private long droneTime = -1;
+    private long receiveTime;
+    private transient long receiveNanos;
+    /* Derived by KinematicsEngine */
+    private transient boolean kinematics;
+    private transient double x;
+    private transient double y;
+    private transient double distance;
+    private transient double verticalSpeed;
+    private transient double ax;
+    private transient double ay;
+    private transient double az;
 
     public NavData(long seqNo, int state, int vision) {
         this.sequenceNumber = seqNo;
@@ -300,6 +351,9 @@ public class NavData {
         sb.append("theta: ").append(getTheta()).append("\n");
         sb.append("phi: ").append(getPhi()).append("\n");
         sb.append("psi: ").append(getPsi()).append("\n");
+        sb.append("vx: ").append(getVx()).append("\n");
+        sb.append("vy: ").append(getVy()).append("\n");
+        sb.append("vz: ").append(getVz()).append("\n");
         return sb.toString();
     }
 
@@ -351,6 +405,160 @@ public class NavData {
         return psi;
     }
 
+    private void setVelocity(float vx, float vy, float vz) {
+        this.vx = vx;
+        this.vy = vy;
+        this.vz = vz;
+    }
+
+    /**
+     * Estimated forward speed in body frame, mm/s.
+     *
+     * @return
+     */
+    public float getVx() {
+        return vx;
+    }
+
+    /**
+     * Estimated sideways speed in body frame, mm/s.
+     *
+     * @return
+     */
+    public float getVy() {
+        return vy;
+    }
+
+    /**
+     * Estimated vertical speed, mm/s.
+     *
+     * @return
+     */
+    public float getVz() {
+        return vz;
+    }
+
+    private void setDroneTime(long droneTime) {
+        this.droneTime = droneTime;
+    }
+
+    /**
+     * Drone time when the packet was sent, in microseconds. Wraps every 2048
+     * seconds.
+     *
+     * @return time or -1 if the time option was not received
+     */
+    public long getDroneTime() {
+        return droneTime;
+    }
+
+    void setReceiveTime(long receiveTime, long receiveNanos) {
+        this.receiveTime = receiveTime;
+        this.receiveNanos = receiveNanos;
+    }
+
+    /**
+     * Bridge time when the packet was received, epoch milliseconds.
+     *
+     * @return
+     */
+    public long getReceiveTime() {
+        return receiveTime;
+    }
+
+    /**
+     * Bridge receive time as System.nanoTime().
+     *
+     * @return
+     */
+    public long getReceiveNanos() {
+        return receiveNanos;
+    }
+
+    void setKinematics(double x, double y, double distance, double verticalSpeed, double ax, double ay, double az) {
+        this.x = x;
+        this.y = y;
+        this.distance = distance;
+        this.verticalSpeed = verticalSpeed;
+        this.ax = ax;
+        this.ay = ay;
+        this.az = az;
+        this.kinematics = true;
+    }
+
+    /**
+     * Whether the derived kinematic state has been stored, see
+     * {@link KinematicsEngine}.
+     *
+     * @return
+     */
+    public boolean hasKinematics() {
+        return kinematics;
+    }
+
+    /**
+     * Dead-reckoned position in the direction of heading zero, mm.
+     *
+     * @return
+     */
+    public double getX() {
+        return x;
+    }
+
+    /**
+     * Dead-reckoned position to the right of heading zero, mm.
+     *
+     * @return
+     */
+    public double getY() {
+        return y;
+    }
+
+    /**
+     * Horizontal distance travelled, mm.
+     *
+     * @return
+     */
+    public double getDistance() {
+        return distance;
+    }
+
+    /**
+     * Vertical speed from altitude changes, altitude units per second.
+     *
+     * @return
+     */
+    public double getVerticalSpeed() {
+        return verticalSpeed;
+    }
+
+    /**
+     * Forward acceleration in body frame, mm/s².
+     *
+     * @return
+     */
+    public double getAx() {
+        return ax;
+    }
+
+    /**
+     * Sideways acceleration in body frame, mm/s².
+     *
+     * @return
+     */
+    public double getAy() {
+        return ay;
+    }
+
+    /**
+     * Vertical acceleration, mm/s².
+     *
+     * @return
+     */
+    public double getAz() {
+        return az;
+    }
+
     private boolean checkCheckSum(ByteBuffer b) {
         return getCRC(b, 0, b.limit() - 4) == getChecksum();
     }
@@ -414,7 +622,9 @@ public class NavData {
                 float phi = optionData.getFloat();
                 float psi = optionData.getFloat();
                 int altitude = optionData.getInt();
-                float v[] = getFloat(optionData, 3);
+                float vx = optionData.getFloat();
+                float vy = optionData.getFloat();
+                float vz = optionData.getFloat();
 
                 droneState.setControlState(controlState);
                 droneState.setBattery(batteryPercentage);
@@ -422,6 +632,11 @@ public class NavData {
                 droneState.setPhi(phi);
                 droneState.setPsi(psi);
                 droneState.setAltitude(altitude);
+                droneState.setVelocity(vx, vy, vz);
+                break;
+            case TIME_TAG:
+                long time = getUInt32(optionData);
+                droneState.setDroneTime((time >>> 21) * 1000000 + (time & 0x1FFFFF));
                 break;
             case WIFI_TAG:
                 long linkQuality = getUInt32(optionData);
@@ -0,0 +1,114 @@
+package org.vaadin.drone.service;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Selects the navdata mode and options from what the subscribers need.
+ *
+ * Each subscriber declares the fields it consumes. The union of the option
+ * tags of those fields, plus the options the bridge itself needs, is requested
+ * from the drone in demo mode. Full navdata is only requested if a subscriber
+ * asks for all fields. The drone is reconfigured only when the result changes.
+ *
+ * @author Sami Ekblad
+ */
+public class NavdataNegotiator {
+
+    /**
+     * Field name for requesting full navdata.
+     */
+    public static final String ALL_FIELDS = "*";
+
+    /* Option mask of a subscriber that wants full navdata */
+    private static final int FULL = -1;
+
+    public interface ModeSender {
+
+        void send(boolean demoMode, int options);
+    }
+
+    private final ModeSender sender;
+    private final int baseOptions;
+    private final Map<String, Integer> subscribers = new HashMap<>();
+
+    private boolean applied;
+    private boolean demoMode;
+    private int options;
+
+    /**
+     * Create new negotiator.
+     *
+     * @param sender Sends the mode and options to the drone.
+     * @param baseOptions Options always requested.
+     */
+    public NavdataNegotiator(ModeSender sender, int baseOptions) {
+        this.sender = sender;
+        this.baseOptions = baseOptions;
+    }
+
+    /**
+     * Add or update a subscriber.
+     *
+     * @param clientId
+     * @param fields Field keys, see {@link TelemetryField#getKey()}, or
+     * {@link #ALL_FIELDS}.
+     */
+    public synchronized void subscribe(String clientId, Collection<String> fields) {
+        int mask = 0;
+        for (String name : fields) {
+            if (ALL_FIELDS.equals(name)) {
+                mask = FULL;
+                break;
+            }
+            TelemetryField f = TelemetryField.fromKey(name);
+            if (f != null) {
+                mask |= 1 << f.getOption();
+            } else {
+                Logger.getLogger(NavdataNegotiator.class.getName()).log(Level.WARNING, "Unknown field '" + name + "' requested by " + clientId);
+            }
+        }
+        subscribers.put(clientId, mask);
+        update();
+    }
+
+    public synchronized void unsubscribe(String clientId) {
+        if (subscribers.remove(clientId) != null) {
+            update();
+        }
+    }
+
+    /**
+     * Send the current selection to the drone if it has changed.
+     */
+    public synchronized void update() {
+        int mask = baseOptions;
+        boolean demo = true;
+        for (int m : subscribers.values()) {
+            if (m == FULL) {
+                demo = false;
+            } else {
+                mask |= m;
+            }
+        }
+        if (applied && demo == demoMode && mask == options) {
+            return;
+        }
+        applied = true;
+        demoMode = demo;
+        options = mask;
+        Logger.getLogger(NavdataNegotiator.class.getName()).log(Level.INFO, "Navdata " + (demo ? "demo" : "full") + " options 0x" + Integer.toHexString(mask) + " for " + subscribers.size() + " subscribers");
+        sender.send(demo, mask);
+    }
+
+    public synchronized boolean isDemoMode() {
+        return demoMode;
+    }
+
+    public synchronized int getOptions() {
+        return options;
+    }
+}
@@ -0,0 +1,170 @@
+package org.vaadin.drone.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+
+/**
+ * Bounded buffer for MQTT messages published while the broker is not
+ * reachable.
+ *
+ * Messages are kept in memory up to the given count. After that they are
+ * appended to a memory-mapped spill file of fixed size. Once the spill file
+ * has messages, new messages also go there so that the order is preserved. The
+ * spill file is reused from the beginning when it has been fully drained. When
+ * both are full, new messages are dropped.
+ *
+ * @author Sami Ekblad
+ */
+public class OfflineBuffer implements Closeable {
+
+    private final ArrayDeque<Message> memory = new ArrayDeque<>();
+    private final int memoryCapacity;
+    private final FileChannel spillChannel;
+    private final MappedByteBuffer spill;
+    private int readPosition;
+    private int writePosition;
+    private int spilled;
+    private long dropped;
+
+    /**
+     * Create new buffer.
+     *
+     * @param memoryCapacity Number of messages kept in memory.
+     * @param spillFile Spill file, or null to drop messages when memory is
+     * full.
+     * @param spillSize Size of the spill file in bytes.
+     * @throws IOException
+     */
+    public OfflineBuffer(int memoryCapacity, Path spillFile, int spillSize) throws IOException {
+        this.memoryCapacity = memoryCapacity;
+        if (spillFile != null) {
+            spillChannel = FileChannel.open(spillFile, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            spill = spillChannel.map(FileChannel.MapMode.READ_WRITE, 0, spillSize);
+        } else {
+            spillChannel = null;
+            spill = null;
+        }
+    }
+
+    /**
+     * Add a message to the end of the buffer.
+     *
+     * @param topic
+     * @param payload
+     * @param retained
+     * @return false if the message was dropped
+     */
+    public synchronized boolean offer(String topic, byte[] payload, boolean retained) {
+        if (spilled == 0 && memory.size() < memoryCapacity) {
+            memory.add(new Message(topic, payload, retained));
+            return true;
+        }
+        if (spill != null) {
+            byte[] t = topic.getBytes(StandardCharsets.UTF_8);
+            int length = 4 + 1 + 2 + t.length + payload.length;
+            if (writePosition + length <= spill.capacity()) {
+                spill.position(writePosition);
+                spill.putInt(length).put((byte) (retained ? 1 : 0)).putShort((short) t.length).put(t).put(payload);
+                writePosition += length;
+                spilled++;
+                return true;
+            }
+        }
+        dropped++;
+        return false;
+    }
+
+    /**
+     * Put a message taken with {@link #poll()} back to the head of the buffer,
+     * e.g. when publishing it failed. It is kept in memory even if the memory
+     * is full, so that the order is preserved.
+     *
+     * @param m
+     */
+    public synchronized void requeue(Message m) {
+        memory.addFirst(m);
+    }
+
+    /**
+     * Take the oldest message.
+     *
+     * @return message or null if empty
+     */
+    public synchronized Message poll() {
+        Message m = memory.poll();
+        if (m != null || spilled == 0) {
+            return m;
+        }
+        spill.position(readPosition);
+        int length = spill.getInt();
+        boolean retained = spill.get() != 0;
+        byte[] t = new byte[spill.getShort()];
+        spill.get(t);
+        byte[] payload = new byte[length - 4 - 1 - 2 - t.length];
+        spill.get(payload);
+        readPosition += length;
+        if (--spilled == 0) {
+            readPosition = 0;
+            writePosition = 0;
+        }
+        return new Message(new String(t, StandardCharsets.UTF_8), payload, retained);
+    }
+
+    public synchronized int size() {
+        return memory.size() + spilled;
+    }
+
+    public synchronized int getSpilled() {
+        return spilled;
+    }
+
+    /**
+     * Number of messages dropped because the buffer was full.
+     *
+     * @return
+     */
+    public synchronized long getDropped() {
+        return dropped;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (spillChannel != null) {
+            spillChannel.close();
+        }
+    }
+
+    /**
+     * Buffered message.
+     */
+    public static class Message {
+
+        private final String topic;
+        private final byte[] payload;
+        private final boolean retained;
+
+        private Message(String topic, byte[] payload, boolean retained) {
+            this.topic = topic;
+            this.payload = payload;
+            this.retained = retained;
+        }
+
+        public String getTopic() {
+            return topic;
+        }
+
+        public byte[] getPayload() {
+            return payload;
+        }
+
+        public boolean isRetained() {
+            return retained;
+        }
+    }
+}
@@ -0,0 +1,272 @@
+package org.vaadin.drone.service;
+
+/**
+ * Windowed min/max/mean/last aggregation of navdata telemetry.
+ *
+ * The window is split into panes of the slide length. Each pane keeps primitive
+ * accumulators per field, so adding a sample never allocates. When a pane is
+ * complete, a summary over the last window is passed to the listener. If the
+ * slide equals the window length, the windows are tumbling.
+ *
+ * Windows follow the monotonic receive time of the samples, so wall clock
+ * adjustments don't stretch or skip them. The wall clock time of the first
+ * sample fixes the mapping used for the published window times.
+ *
+ * When navdata stops, the windows with samples are closed on link down. A
+ * gap without samples is reported as a single summary with zero count when
+ * samples arrive again.
+ *
+ * Not thread safe: samples and link events are expected to arrive from the
+ * navdata thread.
+ *
+ * @author Sami Ekblad
+ */
+public class TelemetryAggregator implements ARDrone.DroneStateCallback, ARDrone.LinkListener {
+
+    private final TelemetryField[] fields;
+    private final long paneMillis;
+    private final int paneCount;
+    private final SummaryListener listener;
+
+    /* Accumulators indexed by [pane * fields.length + field] */
+    private final double[] min;
+    private final double[] max;
+    private final double[] sum;
+    private final double[] last;
+    private final int[] count;
+
+    /* Pane and window times are monotonic milliseconds */
+    private boolean open;
+    private long paneStart;
+    private int pane;
+    /* End of the last window closed by a gap or link down */
+    private boolean closed;
+    private long closedAt;
+    /* Epoch minus monotonic milliseconds, fixed by the first sample */
+    private boolean mapped;
+    private long epochOffset;
+
+    /**
+     * Create new aggregator.
+     *
+     * @param windowMillis Length of the window in milliseconds.
+     * @param slideMillis Interval of the summaries in milliseconds. Must divide
+     * the window length.
+     * @param listener Receiver of the window summaries.
+     * @param fields Fields to aggregate.
+     */
+    public TelemetryAggregator(long windowMillis, long slideMillis, SummaryListener listener, TelemetryField... fields) {
+        if (slideMillis <= 0 || windowMillis < slideMillis || windowMillis % slideMillis != 0) {
+            throw new IllegalArgumentException("Window " + windowMillis + "ms is not a multiple of slide " + slideMillis + "ms");
+        }
+        this.fields = fields.clone();
+        this.paneMillis = slideMillis;
+        this.paneCount = (int) (windowMillis / slideMillis);
+        this.listener = listener;
+        int size = paneCount * fields.length;
+        min = new double[size];
+        max = new double[size];
+        sum = new double[size];
+        last = new double[size];
+        count = new int[paneCount];
+    }
+
+    @Override
+    public void onDroneStateChanged(NavData latestState) {
+        add(latestState, latestState.getReceiveNanos(), latestState.getReceiveTime());
+    }
+
+    /**
+     * Add a sample received at given time.
+     *
+     * @param d
+     * @param timeNanos Receive time from System.nanoTime().
+     * @param epochMillis Receive time from System.currentTimeMillis(). Only
+     * the first sample's is used.
+     */
+    public void add(NavData d, long timeNanos, long epochMillis) {
+        long timeMillis = timeNanos / 1000000;
+        if (!mapped) {
+            epochOffset = epochMillis - timeMillis;
+            mapped = true;
+        }
+        advance(timeMillis);
+        int base = pane * fields.length;
+        boolean first = count[pane] == 0;
+        for (int f = 0; f < fields.length; f++) {
+            double v = fields[f].read(d);
+            int i = base + f;
+            if (first || v < min[i]) {
+                min[i] = v;
+            }
+            if (first || v > max[i]) {
+                max[i] = v;
+            }
+            sum[i] += v;
+            last[i] = v;
+        }
+        count[pane]++;
+    }
+
+    @Override
+    public void onLinkDown(long lastPacketTime) {
+        if (open) {
+            drain();
+        }
+    }
+
+    @Override
+    public void onLinkUp(long outage) {
+    }
+
+    private void advance(long timeMillis) {
+        if (open && timeMillis - paneStart >= paneMillis * (paneCount + 1)) {
+            // A gap longer than the window
+            drain();
+        }
+        if (!open) {
+            // First sample, or after a gap: start over, aligned to the wall clock
+            paneStart = timeMillis - Math.floorMod(timeMillis + epochOffset, paneMillis);
+            pane = 0;
+            open = true;
+            if (closed && paneStart > closedAt && listener != null) {
+                listener.onSummary(new Summary(fields, closedAt + epochOffset, paneStart + epochOffset, 0));
+            }
+            closed = false;
+            return;
+        }
+        while (timeMillis >= paneStart + paneMillis) {
+            paneStart += paneMillis;
+            emit(paneStart);
+            pane = (pane + 1) % paneCount;
+            clearPane(pane);
+        }
+    }
+
+    /* Emit every window that still contains samples and clear all panes */
+    private void drain() {
+        for (int k = 0; k < paneCount; k++) {
+            paneStart += paneMillis;
+            emit(paneStart);
+            pane = (pane + 1) % paneCount;
+            clearPane(pane);
+        }
+        closedAt = paneStart;
+        closed = true;
+        open = false;
+    }
+
+    private void clearPane(int p) {
+        count[p] = 0;
+        int base = p * fields.length;
+        for (int f = 0; f < fields.length; f++) {
+            sum[base + f] = 0;
+        }
+    }
+
+    private void emit(long windowEnd) {
+        int total = 0;
+        for (int p = 0; p < paneCount; p++) {
+            total += count[p];
+        }
+        if (total == 0 || listener == null) {
+            return;
+        }
+
+        Summary s = new Summary(fields, windowEnd - paneMillis * paneCount + epochOffset, windowEnd + epochOffset, total);
+        // Walk panes from oldest to newest so that 'last' ends up as the latest value
+        for (int k = 1; k <= paneCount; k++) {
+            int p = (pane + k) % paneCount;
+            if (count[p] == 0) {
+                continue;
+            }
+            int base = p * fields.length;
+            for (int f = 0; f < fields.length; f++) {
+                int i = base + f;
+                if (s.samples[f] == 0 || min[i] < s.min[f]) {
+                    s.min[f] = min[i];
+                }
+                if (s.samples[f] == 0 || max[i] > s.max[f]) {
+                    s.max[f] = max[i];
+                }
+                s.mean[f] += sum[i];
+                s.last[f] = last[i];
+                s.samples[f] += count[p];
+            }
+        }
+        for (int f = 0; f < fields.length; f++) {
+            s.mean[f] /= total;
+        }
+        listener.onSummary(s);
+    }
+
+    public interface SummaryListener {
+
+        void onSummary(Summary summary);
+    }
+
+    /**
+     * Aggregated values of one window. A summary with zero count marks a gap
+     * without samples and has no field values.
+     */
+    public static class Summary {
+
+        private final TelemetryField[] fields;
+        private final long start;
+        private final long end;
+        private final int count;
+        private final double[] min;
+        private final double[] max;
+        private final double[] mean;
+        private final double[] last;
+        private final int[] samples;
+
+        private Summary(TelemetryField[] fields, long start, long end, int count) {
+            this.fields = fields;
+            this.start = start;
+            this.end = end;
+            this.count = count;
+            min = new double[fields.length];
+            max = new double[fields.length];
+            mean = new double[fields.length];
+            last = new double[fields.length];
+            samples = new int[fields.length];
+        }
+
+        public int getFieldCount() {
+            return fields.length;
+        }
+
+        public TelemetryField getField(int i) {
+            return fields[i];
+        }
+
+        public long getStart() {
+            return start;
+        }
+
+        public long getEnd() {
+            return end;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        public double getMin(int i) {
+            return min[i];
+        }
+
+        public double getMax(int i) {
+            return max[i];
+        }
+
+        public double getMean(int i) {
+            return mean[i];
+        }
+
+        public double getLast(int i) {
+            return last[i];
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package org.vaadin.drone.service;
+
+/**
+ * Numeric telemetry fields that can be read from a {@link NavData} sample
+ * without boxing.
+ *
+ * @author Sami Ekblad
+ */
+public enum TelemetryField {
+
+    ALTITUDE("altitude", NavData.DEMO_TAG) {
+                @Override
+                public double read(NavData d) {
+                    return d.getAltitude();
+                }
+            },
+    BATTERY("battery", NavData.DEMO_TAG) {
+                @Override
+                public double read(NavData d) {
+                    return d.getBattery();
+                }
+            },
+    THETA("theta", NavData.DEMO_TAG) {
+                @Override
+                public double read(NavData d) {
+                    return d.getTheta();
+                }
+            },
+    PHI("phi", NavData.DEMO_TAG) {
+                @Override
+                public double read(NavData d) {
+                    return d.getPhi();
+                }
+            },
+    PSI("psi", NavData.DEMO_TAG) {
+                @Override
+                public double read(NavData d) {
+                    return d.getPsi();
+                }
+            },
+    VX("vx", NavData.DEMO_TAG) {
+                @Override
+                public double read(NavData d) {
+                    return d.getVx();
+                }
+            },
+    VY("vy", NavData.DEMO_TAG) {
+                @Override
+                public double read(NavData d) {
+                    return d.getVy();
+                }
+            },
+    VZ("vz", NavData.DEMO_TAG) {
+                @Override
+                public double read(NavData d) {
+                    return d.getVz();
+                }
+            },
+    LINK_QUALITY("linkQuality", NavData.WIFI_TAG) {
+                @Override
+                public double read(NavData d) {
+                    return d.getLinkQuality();
+                }
+            };
+
+    private final String key;
+    private final int option;
+
+    private TelemetryField(String key, int option) {
+        this.key = key;
+        this.option = option;
+    }
+
+    /**
+     * Read the value of this field from the given sample.
+     *
+     * @param d
+     * @return
+     */
+    public abstract double read(NavData d);
+
+    /**
+     * Name of the field as used in the published NavData JSON and configuration.
+     *
+     * @return
+     */
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * Navdata option tag the field is read from.
+     *
+     * @return
+     */
+    public int getOption() {
+        return option;
+    }
+
+    /**
+     * Navdata option mask needed to read the given fields.
+     *
+     * @param fields
+     * @return bit mask of option tags
+     */
+    public static int getOptions(TelemetryField... fields) {
+        int mask = 0;
+        for (TelemetryField f : fields) {
+            mask |= 1 << f.getOption();
+        }
+        return mask;
+    }
+
+    /**
+     * Parse a comma separated list of field keys.
+     *
+     * @param keys
+     * @return the fields, all fields if the list is null or empty
+     * @throws IllegalArgumentException if a key is unknown
+     */
+    public static TelemetryField[] parse(String keys) {
+        if (keys == null || keys.trim().isEmpty()) {
+            return values();
+        }
+        String[] names = keys.split(",");
+        TelemetryField[] fields = new TelemetryField[names.length];
+        for (int i = 0; i < names.length; i++) {
+            fields[i] = fromKey(names[i]);
+            if (fields[i] == null) {
+                throw new IllegalArgumentException("Unknown telemetry field: " + names[i]);
+            }
+        }
+        return fields;
+    }
+
+    /**
+     * Find a field by its key.
+     *
+     * @param key
+     * @return field or null if not found
+     */
+    public static TelemetryField fromKey(String key) {
+        for (TelemetryField f : values()) {
+            if (f.getKey().equalsIgnoreCase(key.trim())) {
+                return f;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,295 @@
+package org.vaadin.drone.service;
+
+import java.util.Arrays;
+
+/**
+ * Bounded in-memory store of recent navdata telemetry.
+ *
+ * Samples are kept in primitive column arrays used as a ring buffer. The
+ * capacity is fixed at construction, so memory use does not grow with the
+ * length of the flight. Samples older than the retention window are not
+ * returned from queries even if they have not been overwritten yet. Samples
+ * are indexed by monotonic receive time, so wall clock steps don't break
+ * range queries.
+ *
+ * @author Sami Ekblad
+ */
+public class TelemetryRingStore implements ARDrone.DroneStateCallback {
+
+    private final TelemetryField[] fields;
+    private final long retentionMillis;
+    private final int capacity;
+    private final long[] time;
+    /* Monotonic receive time in ms, never decreases */
+    private final long[] mono;
+    private final long[] sequence;
+    private final int[] state;
+    private final float[][] columns;
+
+    /* Total number of samples written, next slot is written % capacity */
+    private long written;
+
+    /**
+     * Create new store.
+     *
+     * @param retentionMillis How long samples are kept.
+     * @param maxRate Maximum expected sample rate per second. Defines the
+     * capacity together with the retention.
+     * @param fields Fields to store.
+     */
+    public TelemetryRingStore(long retentionMillis, int maxRate, TelemetryField... fields) {
+        this.fields = fields.clone();
+        this.retentionMillis = retentionMillis;
+        this.capacity = (int) Math.max(1, retentionMillis * maxRate / 1000);
+        time = new long[capacity];
+        mono = new long[capacity];
+        sequence = new long[capacity];
+        state = new int[capacity];
+        columns = new float[fields.length][capacity];
+    }
+
+    @Override
+    public void onDroneStateChanged(NavData latestState) {
+        add(latestState, latestState.getReceiveTime(), latestState.getReceiveNanos());
+    }
+
+    /**
+     * Add a sample.
+     *
+     * @param d
+     * @param timeMillis Receive time, epoch ms.
+     * @param nanos Receive time, System.nanoTime().
+     */
+    public synchronized void add(NavData d, long timeMillis, long nanos) {
+        int slot = (int) (written % capacity);
+        time[slot] = timeMillis;
+        mono[slot] = nanos / 1000000;
+        sequence[slot] = d.getSequenceNumber();
+        state[slot] = d.getStateBits();
+        for (int f = 0; f < fields.length; f++) {
+            columns[f][slot] = (float) fields[f].read(d);
+        }
+        written++;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public long getRetentionMillis() {
+        return retentionMillis;
+    }
+
+    public TelemetryField[] getFields() {
+        return fields.clone();
+    }
+
+    public synchronized int size() {
+        return (int) Math.min(written, capacity);
+    }
+
+    /**
+     * Query samples in given time range.
+     *
+     * The range is mapped to the monotonic clock through the current time, so
+     * wall clock steps between samples don't affect which samples match. Only
+     * the matching range is copied while holding the store lock.
+     *
+     * @param fromMillis Start time (inclusive), epoch ms.
+     * @param toMillis End time (inclusive), epoch ms.
+     * @param stepMillis Downsampling step. If greater than zero, samples within
+     * each step are averaged into one point.
+     * @param nowMillis Current time, epoch ms. Used for the retention cutoff.
+     * @param nowNanos Current time, System.nanoTime().
+     * @param queryFields Fields to return. Fields not in the store are
+     * ignored.
+     * @return
+     */
+    public Result query(long fromMillis, long toMillis, long stepMillis, long nowMillis, long nowNanos, TelemetryField... queryFields) {
+        int[] idx = new int[queryFields.length];
+        int n = 0;
+        for (TelemetryField qf : queryFields) {
+            int i = Arrays.asList(fields).indexOf(qf);
+            if (i >= 0) {
+                idx[n++] = i;
+            }
+        }
+        idx = Arrays.copyOf(idx, n);
+
+        // Both ends are within the retention before now, so the offset can't overflow
+        fromMillis = Math.max(fromMillis, nowMillis - retentionMillis);
+        toMillis = Math.min(toMillis, nowMillis);
+        long offset = nowMillis - nowNanos / 1000000;
+        Snapshot c = copy(fromMillis - offset, toMillis - offset, idx);
+
+        if (stepMillis <= 0) {
+            Result r = new Result(queryFields(idx), c.size);
+            System.arraycopy(c.time, 0, r.time, 0, c.size);
+            System.arraycopy(c.sequence, 0, r.sequence, 0, c.size);
+            System.arraycopy(c.state, 0, r.state, 0, c.size);
+            for (int f = 0; f < idx.length; f++) {
+                System.arraycopy(c.values[f], 0, r.values[f], 0, c.size);
+            }
+            return r;
+        }
+
+        // Downsample: average of each step, state and sequence of the last sample
+        Result r = new Result(queryFields(idx), countSteps(c, fromMillis - offset, stepMillis));
+        int p = -1;
+        long bucket = Long.MIN_VALUE;
+        int inBucket = 0;
+        for (int k = 0; k < c.size; k++) {
+            long b = (c.mono[k] - (fromMillis - offset)) / stepMillis;
+            if (b != bucket) {
+                average(r, p, inBucket);
+                bucket = b;
+                inBucket = 0;
+                p++;
+                r.time[p] = fromMillis + b * stepMillis;
+            }
+            r.sequence[p] = c.sequence[k];
+            r.state[p] = c.state[k];
+            for (int f = 0; f < idx.length; f++) {
+                r.values[f][p] += c.values[f][k];
+            }
+            inBucket++;
+        }
+        average(r, p, inBucket);
+        return r;
+    }
+
+    /* Copy of the samples with monotonic time in [from, to] */
+    private synchronized Snapshot copy(long fromMono, long toMono, int[] idx) {
+        int size = size();
+        long first = written - size;
+        int lo = search(first, size, fromMono, false);
+        int hi = Math.max(lo, search(first, size, toMono, true));
+        Snapshot c = new Snapshot(hi - lo, idx.length);
+        int start = (int) ((first + lo) % capacity);
+        // The range is at most two segments of the ring
+        int head = Math.min(c.size, capacity - start);
+        copySegment(c, start, 0, head, idx);
+        copySegment(c, 0, head, c.size - head, idx);
+        return c;
+    }
+
+    private void copySegment(Snapshot c, int from, int to, int length, int[] idx) {
+        System.arraycopy(time, from, c.time, to, length);
+        System.arraycopy(mono, from, c.mono, to, length);
+        System.arraycopy(sequence, from, c.sequence, to, length);
+        System.arraycopy(state, from, c.state, to, length);
+        for (int f = 0; f < idx.length; f++) {
+            System.arraycopy(columns[idx[f]], from, c.values[f], to, length);
+        }
+    }
+
+    private TelemetryField[] queryFields(int[] idx) {
+        TelemetryField[] res = new TelemetryField[idx.length];
+        for (int i = 0; i < idx.length; i++) {
+            res[i] = fields[idx[i]];
+        }
+        return res;
+    }
+
+    private static int countSteps(Snapshot c, long fromMono, long stepMillis) {
+        int steps = 0;
+        long bucket = Long.MIN_VALUE;
+        for (int k = 0; k < c.size; k++) {
+            long b = (c.mono[k] - fromMono) / stepMillis;
+            if (b != bucket) {
+                bucket = b;
+                steps++;
+            }
+        }
+        return steps;
+    }
+
+    private static void average(Result r, int p, int n) {
+        if (p < 0 || n == 0) {
+            return;
+        }
+        for (float[] v : r.values) {
+            v[p] /= n;
+        }
+    }
+
+    /* First logical index with monotonic time >= t, or > t if after is set */
+    private int search(long first, int size, long t, boolean after) {
+        int lo = 0;
+        int hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            long tm = mono[(int) ((first + mid) % capacity)];
+            if (tm < t || (after && tm == t)) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /* Samples copied out of the ring */
+    private static class Snapshot {
+
+        private final int size;
+        private final long[] time;
+        private final long[] mono;
+        private final long[] sequence;
+        private final int[] state;
+        private final float[][] values;
+
+        private Snapshot(int size, int fields) {
+            this.size = size;
+            time = new long[size];
+            mono = new long[size];
+            sequence = new long[size];
+            state = new int[size];
+            values = new float[fields][size];
+        }
+    }
+
+    /**
+     * Query result in columnar form.
+     */
+    public static class Result {
+
+        private final TelemetryField[] fields;
+        private final long[] time;
+        private final long[] sequence;
+        private final int[] state;
+        private final float[][] values;
+
+        private Result(TelemetryField[] fields, int size) {
+            this.fields = fields;
+            time = new long[size];
+            sequence = new long[size];
+            state = new int[size];
+            values = new float[fields.length][size];
+        }
+
+        public int size() {
+            return time.length;
+        }
+
+        public TelemetryField[] getFields() {
+            return fields;
+        }
+
+        public long[] getTime() {
+            return time;
+        }
+
+        public long[] getSequence() {
+            return sequence;
+        }
+
+        public int[] getState() {
+            return state;
+        }
+
+        public float[] getValues(int field) {
+            return values[field];
+        }
+    }
+}
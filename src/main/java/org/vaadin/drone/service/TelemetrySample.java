@@ -0,0 +1,85 @@
+package org.vaadin.drone.service;
+
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+
+/**
+ * Stored navdata sample, one row per received packet.
+ *
+ * Rows are inserted with JDBC batches by {@link TelemetryWriter}. This entity
+ * defines the schema and is used for reading the history.
+ *
+ * @author Sami Ekblad
+ */
+@Entity
+@Table(indexes = {
+    @Index(name = "idx_telemetry_sample_flight_time", columnList = "flightId,sampleTime")})
+public class TelemetrySample {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    private long flightId;
+    private long sampleTime;
+    private long sequenceNumber;
+    private int state;
+    private int altitude;
+    private int battery;
+    private float theta;
+    private float phi;
+    private float psi;
+    private int linkQuality;
+
+    protected TelemetrySample() {
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public long getFlightId() {
+        return flightId;
+    }
+
+    public long getSampleTime() {
+        return sampleTime;
+    }
+
+    public long getSequenceNumber() {
+        return sequenceNumber;
+    }
+
+    public int getState() {
+        return state;
+    }
+
+    public int getAltitude() {
+        return altitude;
+    }
+
+    public int getBattery() {
+        return battery;
+    }
+
+    public float getTheta() {
+        return theta;
+    }
+
+    public float getPhi() {
+        return phi;
+    }
+
+    public float getPsi() {
+        return psi;
+    }
+
+    public int getLinkQuality() {
+        return linkQuality;
+    }
+
+}
@@ -0,0 +1,16 @@
+package org.vaadin.drone.service;
+
+import java.util.List;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+/**
+ * Stored navdata samples.
+ *
+ * @author Sami Ekblad
+ */
+public interface TelemetrySampleRepository extends JpaRepository<TelemetrySample, Long> {
+
+    List<TelemetrySample> findByFlightIdAndSampleTimeBetweenOrderBySampleTimeAsc(long flightId, long from, long to);
+
+    long countByFlightId(long flightId);
+}
@@ -0,0 +1,264 @@
+package org.vaadin.drone.service;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+/**
+ * Write-behind persistence of navdata samples.
+ *
+ * The navdata thread only copies sample fields into a preallocated column
+ * batch. A separate writer thread swaps the batch when it reaches the batch
+ * size or the flush interval has passed, and stores it with a single JDBC batch
+ * insert. If the writer falls behind and the batch is full, new samples are
+ * dropped and counted.
+ *
+ * Samples are stored while the drone is flying. Every takeoff starts a new
+ * {@link Flight}.
+ *
+ * @author Sami Ekblad
+ */
+@Service
+public class TelemetryWriter implements ARDrone.DroneStateCallback {
+
+    private static final String INSERT_SQL = "insert into telemetry_sample"
+            + " (flight_id, sample_time, sequence_number, state, altitude, battery, theta, phi, psi, link_quality)"
+            + " values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final long STOP_TIMEOUT = 10000;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @Autowired
+    private FlightRepository flights;
+
+    private int batchSize = 200;
+    private long flushInterval = 1000;
+
+    /* Batch being filled by the navdata thread, guarded by this */
+    private Batch active;
+    /* Batch being written by the writer thread */
+    private Batch flushing;
+
+    private volatile boolean running;
+    private Thread writerThread;
+    private Flight currentFlight;
+    private long dropped;
+    private long written;
+
+    /**
+     * Start the writer thread.
+     *
+     * @param batchSize Number of samples that triggers a flush.
+     * @param flushInterval Maximum time in milliseconds a sample waits before it
+     * is written.
+     * @param capacity Number of samples that can wait for writing.
+     */
+    public synchronized void start(int batchSize, long flushInterval, int capacity) {
+        if (running) {
+            return;
+        }
+        this.batchSize = batchSize;
+        this.flushInterval = flushInterval;
+        active = new Batch(capacity);
+        flushing = new Batch(capacity);
+        running = true;
+        writerThread = new Thread(this::writeLoop, "telemetry-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        Thread t;
+        synchronized (this) {
+            running = false;
+            notifyAll();
+            t = writerThread;
+        }
+        if (t != null) {
+            try {
+                t.join(STOP_TIMEOUT);
+            } catch (InterruptedException ignored) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Override
+    public void onDroneStateChanged(NavData latestState) {
+        add(latestState, System.currentTimeMillis());
+    }
+
+    public synchronized void add(NavData d, long timeMillis) {
+        if (!running) {
+            return;
+        }
+        if (!active.add(d, timeMillis)) {
+            dropped++;
+            return;
+        }
+        if (active.size == batchSize) {
+            notifyAll();
+        }
+    }
+
+    /**
+     * Number of samples dropped because the writer could not keep up.
+     *
+     * @return
+     */
+    public synchronized long getDropped() {
+        return dropped;
+    }
+
+    /**
+     * Number of samples stored.
+     *
+     * @return
+     */
+    public synchronized long getWritten() {
+        return written;
+    }
+
+    private void writeLoop() {
+        Logger.getLogger(TelemetryWriter.class.getName()).log(Level.INFO, "Starting telemetry writer");
+        boolean more = true;
+        while (more) {
+            synchronized (this) {
+                long deadline = System.currentTimeMillis() + flushInterval;
+                long wait = flushInterval;
+                while (running && active.size < batchSize && wait > 0) {
+                    try {
+                        wait(wait);
+                    } catch (InterruptedException e) {
+                        running = false;
+                    }
+                    wait = deadline - System.currentTimeMillis();
+                }
+                more = running;
+                Batch b = active;
+                active = flushing;
+                flushing = b;
+            }
+            try {
+                write(flushing);
+            } catch (RuntimeException e) {
+                Logger.getLogger(TelemetryWriter.class.getName()).log(Level.SEVERE, "Telemetry write failed", e);
+            }
+            flushing.size = 0;
+        }
+        closeFlight(System.currentTimeMillis());
+        Logger.getLogger(TelemetryWriter.class.getName()).log(Level.INFO, "Stopped telemetry writer");
+    }
+
+    /* Split the batch into flights and write the rows of each flight */
+    private void write(Batch b) {
+        int start = 0;
+        for (int i = 0; i < b.size; i++) {
+            boolean flying = (b.state[i] & 1) != 0;
+            if (flying && currentFlight == null) {
+                start = i;
+                currentFlight = flights.save(new Flight(b.time[i]));
+            } else if (!flying && currentFlight != null) {
+                insert(b, start, i, currentFlight.getId());
+                closeFlight(b.time[i]);
+            }
+        }
+        if (currentFlight != null) {
+            insert(b, start, b.size, currentFlight.getId());
+        }
+    }
+
+    private void closeFlight(long time) {
+        if (currentFlight != null) {
+            currentFlight.setEndTime(time);
+            flights.save(currentFlight);
+            currentFlight = null;
+        }
+    }
+
+    private void insert(Batch b, int from, int to, long flightId) {
+        if (from >= to) {
+            return;
+        }
+        jdbc.batchUpdate(INSERT_SQL, new BatchPreparedStatementSetter() {
+
+            @Override
+            public void setValues(PreparedStatement ps, int k) throws SQLException {
+                int i = from + k;
+                ps.setLong(1, flightId);
+                ps.setLong(2, b.time[i]);
+                ps.setLong(3, b.sequence[i]);
+                ps.setInt(4, b.state[i]);
+                ps.setInt(5, b.altitude[i]);
+                ps.setInt(6, b.battery[i]);
+                ps.setFloat(7, b.theta[i]);
+                ps.setFloat(8, b.phi[i]);
+                ps.setFloat(9, b.psi[i]);
+                ps.setInt(10, b.linkQuality[i]);
+            }
+
+            @Override
+            public int getBatchSize() {
+                return to - from;
+            }
+        });
+        synchronized (this) {
+            written += to - from;
+        }
+    }
+
+    /**
+     * Preallocated columns of pending samples.
+     */
+    private static class Batch {
+
+        private final long[] time;
+        private final long[] sequence;
+        private final int[] state;
+        private final int[] altitude;
+        private final int[] battery;
+        private final float[] theta;
+        private final float[] phi;
+        private final float[] psi;
+        private final int[] linkQuality;
+        private int size;
+
+        private Batch(int capacity) {
+            time = new long[capacity];
+            sequence = new long[capacity];
+            state = new int[capacity];
+            altitude = new int[capacity];
+            battery = new int[capacity];
+            theta = new float[capacity];
+            phi = new float[capacity];
+            psi = new float[capacity];
+            linkQuality = new int[capacity];
+        }
+
+        private boolean add(NavData d, long timeMillis) {
+            if (size == time.length) {
+                return false;
+            }
+            time[size] = timeMillis;
+            sequence[size] = d.getSequenceNumber();
+            state[size] = d.getStateBits();
+            altitude[size] = d.getAltitude();
+            battery[size] = d.getBattery();
+            theta[size] = d.getTheta();
+            phi[size] = d.getPhi();
+            psi[size] = d.getPsi();
+            linkQuality[size] = d.getLinkQuality();
+            size++;
+            return true;
+        }
+    }
+}
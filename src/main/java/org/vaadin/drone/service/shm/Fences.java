@@ -0,0 +1,78 @@
+package org.vaadin.drone.service.shm;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Memory fences for the seqlock.
+ *
+ * Uses the fences of sun.misc.Unsafe, looked up reflectively. There is no
+ * fallback: volatile accesses to another field do not order the plain
+ * accesses to the mapped buffer in the way the seqlock needs, so the slot is
+ * not used at all without real fences.
+ *
+ * @author Sami Ekblad
+ */
+final class Fences {
+
+    private static final MethodHandle STORE_FENCE;
+    private static final MethodHandle LOAD_FENCE;
+
+    static {
+        MethodHandle store = null;
+        MethodHandle load = null;
+        try {
+            Class<?> c = Class.forName("sun.misc.Unsafe");
+            Field f = c.getDeclaredField("theUnsafe");
+            f.setAccessible(true);
+            Object unsafe = f.get(null);
+            MethodType type = MethodType.methodType(void.class);
+            store = MethodHandles.lookup().findVirtual(c, "storeFence", type).bindTo(unsafe);
+            load = MethodHandles.lookup().findVirtual(c, "loadFence", type).bindTo(unsafe);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            Logger.getLogger(Fences.class.getName()).log(Level.WARNING, "Unsafe fences not available", e);
+        }
+        STORE_FENCE = store;
+        LOAD_FENCE = load;
+    }
+
+    private Fences() {
+    }
+
+    /**
+     * Check that the fences can be used.
+     *
+     * @throws UnsupportedOperationException if they can't
+     */
+    static void check() {
+        if (STORE_FENCE == null || LOAD_FENCE == null) {
+            throw new UnsupportedOperationException("Memory fences not available");
+        }
+    }
+
+    /**
+     * Stores before the fence are not reordered with stores after it.
+     */
+    static void storeFence() {
+        try {
+            STORE_FENCE.invokeExact();
+        } catch (Throwable t) {
+            throw new IllegalStateException(t);
+        }
+    }
+
+    /**
+     * Loads before the fence are not reordered with loads after it.
+     */
+    static void loadFence() {
+        try {
+            LOAD_FENCE.invokeExact();
+        } catch (Throwable t) {
+            throw new IllegalStateException(t);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package org.vaadin.drone.service.shm;
+
+/**
+ * Navdata values read from the shared slot. Reused between reads to avoid
+ * allocation.
+ *
+ * @author Sami Ekblad
+ */
+public class SharedState {
+
+    long version;
+    long sequence;
+    int state;
+    int battery;
+    int altitude;
+    float theta;
+    float phi;
+    float psi;
+    float vx;
+    float vy;
+    float vz;
+    int linkQuality;
+    long receiveTime;
+    long receiveNanos;
+    long droneTime;
+    long writeNanos;
+
+    /**
+     * Seqlock counter of the sample, increases with every write.
+     *
+     * @return
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    public long getSequenceNumber() {
+        return sequence;
+    }
+
+    public int getStateBits() {
+        return state;
+    }
+
+    public int getBattery() {
+        return battery;
+    }
+
+    public int getAltitude() {
+        return altitude;
+    }
+
+    public float getTheta() {
+        return theta;
+    }
+
+    public float getPhi() {
+        return phi;
+    }
+
+    public float getPsi() {
+        return psi;
+    }
+
+    public float getVx() {
+        return vx;
+    }
+
+    public float getVy() {
+        return vy;
+    }
+
+    public float getVz() {
+        return vz;
+    }
+
+    public int getLinkQuality() {
+        return linkQuality;
+    }
+
+    /**
+     * Bridge receive time, epoch milliseconds.
+     *
+     * @return
+     */
+    public long getReceiveTime() {
+        return receiveTime;
+    }
+
+    /**
+     * Bridge receive time, System.nanoTime() of the bridge. On Linux this is
+     * CLOCK_MONOTONIC and comparable between processes.
+     *
+     * @return
+     */
+    public long getReceiveNanos() {
+        return receiveNanos;
+    }
+
+    /**
+     * Drone time in microseconds, -1 if not known.
+     *
+     * @return
+     */
+    public long getDroneTime() {
+        return droneTime;
+    }
+
+    /**
+     * Time the sample was written to the slot, System.nanoTime() of the
+     * bridge.
+     *
+     * @return
+     */
+    public long getWriteNanos() {
+        return writeNanos;
+    }
+}
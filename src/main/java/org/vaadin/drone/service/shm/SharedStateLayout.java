@@ -0,0 +1,36 @@
+package org.vaadin.drone.service.shm;
+
+/**
+ * Byte offsets of the shared state slot. All values are little endian.
+ *
+ * @author Sami Ekblad
+ */
+final class SharedStateLayout {
+
+    static final int MAGIC = 0x4D534441; // "ADSM"
+    static final int VERSION = 1;
+
+    static final int MAGIC_OFFSET = 0;
+    static final int VERSION_OFFSET = 4;
+    static final int SEQLOCK_OFFSET = 8;
+    static final int SEQUENCE_OFFSET = 16;
+    static final int STATE_OFFSET = 24;
+    static final int BATTERY_OFFSET = 28;
+    static final int ALTITUDE_OFFSET = 32;
+    static final int THETA_OFFSET = 36;
+    static final int PHI_OFFSET = 40;
+    static final int PSI_OFFSET = 44;
+    static final int VX_OFFSET = 48;
+    static final int VY_OFFSET = 52;
+    static final int VZ_OFFSET = 56;
+    static final int LINK_QUALITY_OFFSET = 60;
+    static final int RECEIVE_TIME_OFFSET = 64;
+    static final int RECEIVE_NANOS_OFFSET = 72;
+    static final int DRONE_TIME_OFFSET = 80;
+    static final int WRITE_NANOS_OFFSET = 88;
+
+    static final int SIZE = 96;
+
+    private SharedStateLayout() {
+    }
+}
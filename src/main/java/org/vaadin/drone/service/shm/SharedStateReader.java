@@ -0,0 +1,127 @@
+package org.vaadin.drone.service.shm;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import static org.vaadin.drone.service.shm.SharedStateLayout.*;
+
+/**
+ * Reads the latest navdata sample written by {@link SharedStateWriter}, in
+ * the same or another process.
+ *
+ * Reading is a few memory loads: no system calls, no locks and no
+ * allocation. Typical use is polling:
+ *
+ * <pre>
+ * SharedStateReader reader = new SharedStateReader(Paths.get("/dev/shm/ardrone-navdata"));
+ * SharedState state = new SharedState();
+ * while (running) {
+ *     if (reader.readIfChanged(state)) {
+ *         control(state.getAltitude(), state.getPsi());
+ *     }
+ * }
+ * </pre>
+ *
+ * A reader instance is not thread safe, use one per thread.
+ *
+ * @author Sami Ekblad
+ */
+public class SharedStateReader implements Closeable {
+
+    /* Odd or changed counter reads before giving up. A write takes well under a microsecond. */
+    static final int MAX_ATTEMPTS = 10000;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buf;
+
+    /**
+     * Open the slot file.
+     *
+     * @param file
+     * @throws IOException if the file can't be opened or is not a slot file
+     * @throws UnsupportedOperationException if memory fences are not
+     * available
+     */
+    public SharedStateReader(Path file) throws IOException {
+        Fences.check();
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+        if (channel.size() < SIZE) {
+            channel.close();
+            throw new IOException("Not a navdata slot: " + file);
+        }
+        buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, SIZE);
+        buf.order(ByteOrder.LITTLE_ENDIAN);
+        if (buf.getInt(MAGIC_OFFSET) != MAGIC || buf.getInt(VERSION_OFFSET) != VERSION) {
+            channel.close();
+            throw new IOException("Not a navdata slot: " + file);
+        }
+    }
+
+    /**
+     * Read the latest sample.
+     *
+     * Gives up after {@link #MAX_ATTEMPTS} attempts if the counter stays odd
+     * or keeps changing, for example when the writer died in the middle of a
+     * write. The slot recovers when the bridge is restarted.
+     *
+     * @param into Receives the values.
+     * @return false if nothing has been written yet or no consistent sample
+     * could be read, in which case into is left partially updated
+     */
+    public boolean read(SharedState into) {
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+            long before = buf.getLong(SEQLOCK_OFFSET);
+            Fences.loadFence();
+            if ((before & 1) != 0) {
+                Thread.yield();
+                continue;
+            }
+            if (before == 0) {
+                return false;
+            }
+            into.sequence = buf.getLong(SEQUENCE_OFFSET);
+            into.state = buf.getInt(STATE_OFFSET);
+            into.battery = buf.getInt(BATTERY_OFFSET);
+            into.altitude = buf.getInt(ALTITUDE_OFFSET);
+            into.theta = buf.getFloat(THETA_OFFSET);
+            into.phi = buf.getFloat(PHI_OFFSET);
+            into.psi = buf.getFloat(PSI_OFFSET);
+            into.vx = buf.getFloat(VX_OFFSET);
+            into.vy = buf.getFloat(VY_OFFSET);
+            into.vz = buf.getFloat(VZ_OFFSET);
+            into.linkQuality = buf.getInt(LINK_QUALITY_OFFSET);
+            into.receiveTime = buf.getLong(RECEIVE_TIME_OFFSET);
+            into.receiveNanos = buf.getLong(RECEIVE_NANOS_OFFSET);
+            into.droneTime = buf.getLong(DRONE_TIME_OFFSET);
+            into.writeNanos = buf.getLong(WRITE_NANOS_OFFSET);
+            Fences.loadFence();
+            if (buf.getLong(SEQLOCK_OFFSET) == before) {
+                into.version = before;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Read the latest sample if it differs from the one in the given state.
+     *
+     * @param into Previously read state, receives the new values.
+     * @return true if a new sample was read
+     */
+    public boolean readIfChanged(SharedState into) {
+        long version = buf.getLong(SEQLOCK_OFFSET);
+        // Keeps the load in the caller's polling loop
+        Fences.loadFence();
+        return version != into.version && read(into);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,90 @@
+package org.vaadin.drone.service.shm;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import org.vaadin.drone.service.ARDrone;
+import org.vaadin.drone.service.NavData;
+import static org.vaadin.drone.service.shm.SharedStateLayout.*;
+
+/**
+ * Publishes the latest navdata sample to a memory-mapped file.
+ *
+ * The slot is protected by a seqlock: the counter is odd while a sample is
+ * being written, and readers retry if it was odd or changed while they read.
+ * Writing never blocks on readers.
+ *
+ * Not thread safe: there must be a single writer, the navdata thread.
+ *
+ * @author Sami Ekblad
+ */
+public class SharedStateWriter implements ARDrone.DroneStateCallback, Closeable {
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buf;
+    private long seqlock;
+
+    /**
+     * Create the slot file, or reuse an existing one.
+     *
+     * @param file For example a file in /dev/shm.
+     * @throws IOException
+     * @throws UnsupportedOperationException if memory fences are not
+     * available
+     */
+    public SharedStateWriter(Path file) throws IOException {
+        Fences.check();
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        buf = channel.map(FileChannel.MapMode.READ_WRITE, 0, SIZE);
+        buf.order(ByteOrder.LITTLE_ENDIAN);
+
+        // A writer that died while writing left the counter odd and the sample torn: start empty
+        long previous = buf.getLong(SEQLOCK_OFFSET);
+        seqlock = (previous & 1) != 0 ? 0 : previous;
+        buf.putInt(VERSION_OFFSET, VERSION);
+        buf.putInt(MAGIC_OFFSET, MAGIC);
+        Fences.storeFence();
+        buf.putLong(SEQLOCK_OFFSET, seqlock);
+    }
+
+    @Override
+    public void onDroneStateChanged(NavData latestState) {
+        write(latestState);
+    }
+
+    /**
+     * Write a sample.
+     *
+     * @param d
+     */
+    public void write(NavData d) {
+        buf.putLong(SEQLOCK_OFFSET, ++seqlock);
+        Fences.storeFence();
+        buf.putLong(SEQUENCE_OFFSET, d.getSequenceNumber());
+        buf.putInt(STATE_OFFSET, d.getStateBits());
+        buf.putInt(BATTERY_OFFSET, d.getBattery());
+        buf.putInt(ALTITUDE_OFFSET, d.getAltitude());
+        buf.putFloat(THETA_OFFSET, d.getTheta());
+        buf.putFloat(PHI_OFFSET, d.getPhi());
+        buf.putFloat(PSI_OFFSET, d.getPsi());
+        buf.putFloat(VX_OFFSET, d.getVx());
+        buf.putFloat(VY_OFFSET, d.getVy());
+        buf.putFloat(VZ_OFFSET, d.getVz());
+        buf.putInt(LINK_QUALITY_OFFSET, d.getLinkQuality());
+        buf.putLong(RECEIVE_TIME_OFFSET, d.getReceiveTime());
+        buf.putLong(RECEIVE_NANOS_OFFSET, d.getReceiveNanos());
+        buf.putLong(DRONE_TIME_OFFSET, d.getDroneTime());
+        buf.putLong(WRITE_NANOS_OFFSET, System.nanoTime());
+        Fences.storeFence();
+        buf.putLong(SEQLOCK_OFFSET, ++seqlock);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
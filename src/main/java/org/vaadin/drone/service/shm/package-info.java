@@ -0,0 +1,52 @@
+/**
+ * Latest navdata sample in shared memory for processes on the same host.
+ *
+ * The bridge writes every decoded sample to a 96-byte memory-mapped file,
+ * see 'drone.shmFile'. The slot is a seqlock: the writer makes the counter
+ * odd, writes the values and makes it even again. A reader reads the counter,
+ * the values and the counter again, and retries if the counter was odd or
+ * changed. A writer that dies in the middle of a write leaves the counter odd
+ * until the bridge is started again, so readers bound their retries and
+ * treat the slot as stale when they run out. All values are little endian. The layout in C:
+ *
+ * <pre>
+ * struct ardrone_navdata_slot {
+ *     int32_t  magic;          //  0: 0x4D534441 "ADSM"
+ *     int32_t  version;        //  4: 1
+ *     int64_t  seqlock;        //  8: odd while writing, 0 before first write
+ *     int64_t  sequence;       // 16: navdata sequence number
+ *     int32_t  state;          // 24: state bits
+ *     int32_t  battery;        // 28: %
+ *     int32_t  altitude;       // 32
+ *     float    theta;          // 36: millidegrees
+ *     float    phi;            // 40: millidegrees
+ *     float    psi;            // 44: millidegrees
+ *     float    vx;             // 48: mm/s
+ *     float    vy;             // 52: mm/s
+ *     float    vz;             // 56: mm/s
+ *     int32_t  link_quality;   // 60
+ *     int64_t  receive_time;   // 64: epoch ms
+ *     int64_t  receive_nanos;  // 72: CLOCK_MONOTONIC ns on Linux
+ *     int64_t  drone_time;     // 80: us, -1 if not known
+ *     int64_t  write_nanos;    // 88: CLOCK_MONOTONIC ns on Linux
+ * };
+ *
+ * int read_slot(volatile struct ardrone_navdata_slot *s, struct ardrone_navdata_slot *out) {
+ *     int64_t before, after;
+ *     for (int attempt = 0; attempt &lt; 10000; attempt++) {
+ *         before = __atomic_load_n(&amp;s-&gt;seqlock, __ATOMIC_ACQUIRE);
+ *         memcpy(out, (const void *) s, sizeof(*out));
+ *         __atomic_thread_fence(__ATOMIC_ACQUIRE);
+ *         after = __atomic_load_n(&amp;s-&gt;seqlock, __ATOMIC_RELAXED);
+ *         if (!(before &amp; 1) &amp;&amp; before == after) {
+ *             return before != 0;
+ *         }
+ *         sched_yield();
+ *     }
+ *     return 0; // writer stalled or died mid-write
+ * }
+ * </pre>
+ *
+ * Java processes use {@link org.vaadin.drone.service.shm.SharedStateReader}.
+ */
+package org.vaadin.drone.service.shm;
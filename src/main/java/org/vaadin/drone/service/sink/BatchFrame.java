@@ -0,0 +1,240 @@
+package org.vaadin.drone.service.sink;
+
+import org.vaadin.drone.service.TelemetryField;
+
+/**
+ * A batch of navdata samples decoded from a columnar frame.
+ *
+ * Frames are written by {@link BatchFrameEncoder}. Each field is stored as a
+ * column, so consecutive values of the same field are next to each other and
+ * compress well. Layout, as a bit stream with the most significant bit first:
+ *
+ * <pre>
+ * 32 bits  magic 0x41444231 ("ADB1")
+ * 16 bits  number of samples n
+ *  8 bits  number of value columns m
+ * column   navdata sequence numbers, delta-of-delta
+ * column   bridge receive times, epoch ms, delta-of-delta
+ * column   drone times, us, -1 if not known, delta-of-delta
+ * column   state bits, XOR
+ * m columns values in {@link TelemetryField} order, float bits, XOR
+ * </pre>
+ *
+ * A delta-of-delta column starts with the first value in 64 bits. Each
+ * following value is coded as the change of its delta from the previous delta,
+ * zigzag coded into one of the buckets '0' (no change), '10' + 7 bits,
+ * '110' + 9 bits, '1110' + 12 bits, '11110' + 32 bits or '11111' + 64 bits.
+ * At a steady rate a sequence number costs one bit.
+ * <p>
+ * A XOR column starts with the first value in 32 bits. Each following value is
+ * XORed with the previous one as in Gorilla: '0' if equal, '10' + the
+ * meaningful bits if they fit within the previous leading and trailing zeros,
+ * otherwise '11' + 5 bits of leading zeros + 5 bits of length - 1 + the
+ * meaningful bits.
+ * <p>
+ * The frame is padded with zero bits to a full byte. New fields are appended
+ * to the end of {@link TelemetryField}, so decoders read the value columns
+ * they know and ignore the rest.
+ *
+ * @author Sami Ekblad
+ */
+public class BatchFrame {
+
+    public static final int MAGIC = 0x41444231;
+
+    /**
+     * Largest number of samples in a frame.
+     */
+    public static final int MAX_SAMPLES = 0xFFFF;
+
+    private static final TelemetryField[] FIELDS = TelemetryField.values();
+
+    private final int size;
+    private final long[] sequence;
+    private final long[] receiveTime;
+    private final long[] droneTime;
+    private final int[] state;
+    private final int[][] values;
+
+    private BatchFrame(int size, long[] sequence, long[] receiveTime, long[] droneTime, int[] state, int[][] values) {
+        this.size = size;
+        this.sequence = sequence;
+        this.receiveTime = receiveTime;
+        this.droneTime = droneTime;
+        this.state = state;
+        this.values = values;
+    }
+
+    /**
+     * Decode a frame.
+     *
+     * @param frame
+     * @return
+     * @throws IllegalArgumentException if the data is not a valid frame
+     */
+    public static BatchFrame decode(byte[] frame) {
+        BitReader in = new BitReader(frame);
+        if ((int) in.read(32) != MAGIC) {
+            throw new IllegalArgumentException("Not a batch frame");
+        }
+        int size = (int) in.read(16);
+        int columns = (int) in.read(8);
+        long[] sequence = new long[size];
+        long[] receiveTime = new long[size];
+        long[] droneTime = new long[size];
+        int[] state = new int[size];
+        readDeltas(in, sequence, size);
+        readDeltas(in, receiveTime, size);
+        readDeltas(in, droneTime, size);
+        readXor(in, state, size);
+        int[][] values = new int[Math.min(columns, FIELDS.length)][size];
+        for (int[] column : values) {
+            readXor(in, column, size);
+        }
+        return new BatchFrame(size, sequence, receiveTime, droneTime, state, values);
+    }
+
+    static void writeDeltas(BitWriter out, long[] column, int size) {
+        if (size == 0) {
+            return;
+        }
+        out.write(column[0], 64);
+        long previousDelta = 0;
+        for (int i = 1; i < size; i++) {
+            long delta = column[i] - column[i - 1];
+            long dod = delta - previousDelta;
+            previousDelta = delta;
+            long zigzag = (dod << 1) ^ (dod >> 63);
+            if (zigzag == 0) {
+                out.write(0, 1);
+            } else if (zigzag >>> 7 == 0) {
+                out.write(0b10, 2);
+                out.write(zigzag, 7);
+            } else if (zigzag >>> 9 == 0) {
+                out.write(0b110, 3);
+                out.write(zigzag, 9);
+            } else if (zigzag >>> 12 == 0) {
+                out.write(0b1110, 4);
+                out.write(zigzag, 12);
+            } else if (zigzag >>> 32 == 0) {
+                out.write(0b11110, 5);
+                out.write(zigzag, 32);
+            } else {
+                out.write(0b11111, 5);
+                out.write(zigzag, 64);
+            }
+        }
+    }
+
+    static void readDeltas(BitReader in, long[] column, int size) {
+        if (size == 0) {
+            return;
+        }
+        column[0] = in.read(64);
+        long delta = 0;
+        for (int i = 1; i < size; i++) {
+            long zigzag;
+            if (!in.readBit()) {
+                zigzag = 0;
+            } else if (!in.readBit()) {
+                zigzag = in.read(7);
+            } else if (!in.readBit()) {
+                zigzag = in.read(9);
+            } else if (!in.readBit()) {
+                zigzag = in.read(12);
+            } else if (!in.readBit()) {
+                zigzag = in.read(32);
+            } else {
+                zigzag = in.read(64);
+            }
+            delta += (zigzag >>> 1) ^ -(zigzag & 1);
+            column[i] = column[i - 1] + delta;
+        }
+    }
+
+    static void writeXor(BitWriter out, int[] column, int size) {
+        if (size == 0) {
+            return;
+        }
+        out.write(column[0], 32);
+        int leading = -1;
+        int trailing = 0;
+        for (int i = 1; i < size; i++) {
+            int xor = column[i] ^ column[i - 1];
+            if (xor == 0) {
+                out.write(0, 1);
+                continue;
+            }
+            int l = Integer.numberOfLeadingZeros(xor);
+            int t = Integer.numberOfTrailingZeros(xor);
+            if (leading >= 0 && l >= leading && t >= trailing) {
+                out.write(0b10, 2);
+                out.write(xor >>> trailing, 32 - leading - trailing);
+            } else {
+                int length = 32 - l - t;
+                out.write(0b11, 2);
+                out.write(l, 5);
+                out.write(length - 1, 5);
+                out.write(xor >>> t, length);
+                leading = l;
+                trailing = t;
+            }
+        }
+    }
+
+    static void readXor(BitReader in, int[] column, int size) {
+        if (size == 0) {
+            return;
+        }
+        column[0] = (int) in.read(32);
+        int leading = 0;
+        int trailing = 0;
+        for (int i = 1; i < size; i++) {
+            if (!in.readBit()) {
+                column[i] = column[i - 1];
+                continue;
+            }
+            if (in.readBit()) {
+                leading = (int) in.read(5);
+                trailing = 32 - leading - ((int) in.read(5) + 1);
+            }
+            column[i] = column[i - 1] ^ ((int) in.read(32 - leading - trailing) << trailing);
+        }
+    }
+
+    /**
+     * Number of samples.
+     *
+     * @return
+     */
+    public int getSize() {
+        return size;
+    }
+
+    public long getSequenceNumber(int sample) {
+        return sequence[sample];
+    }
+
+    public int getStateBits(int sample) {
+        return state[sample];
+    }
+
+    public long getReceiveTime(int sample) {
+        return receiveTime[sample];
+    }
+
+    public long getDroneTime(int sample) {
+        return droneTime[sample];
+    }
+
+    /**
+     * Value of a field.
+     *
+     * @param field
+     * @param sample
+     * @return value or NaN if not included in the frame
+     */
+    public float getValue(TelemetryField field, int sample) {
+        return field.ordinal() < values.length ? Float.intBitsToFloat(values[field.ordinal()][sample]) : Float.NaN;
+    }
+}
@@ -0,0 +1,106 @@
+package org.vaadin.drone.service.sink;
+
+import org.vaadin.drone.service.NavData;
+import org.vaadin.drone.service.TelemetryField;
+
+/**
+ * Collects navdata samples into columns and encodes them as a
+ * {@link BatchFrame}.
+ *
+ * The columns are primitive arrays allocated once, so adding a sample never
+ * allocates. Not thread safe.
+ *
+ * @author Sami Ekblad
+ */
+public class BatchFrameEncoder {
+
+    private static final TelemetryField[] FIELDS = TelemetryField.values();
+
+    private final int capacity;
+    private final long[] sequence;
+    private final long[] receiveTime;
+    private final long[] droneTime;
+    private final int[] state;
+    private final int[][] values;
+    private final BitWriter out;
+    private int size;
+
+    /**
+     * Create new encoder.
+     *
+     * @param capacity Samples per frame, at most {@link BatchFrame#MAX_SAMPLES}.
+     */
+    public BatchFrameEncoder(int capacity) {
+        if (capacity < 1 || capacity > BatchFrame.MAX_SAMPLES) {
+            throw new IllegalArgumentException("Invalid batch size " + capacity);
+        }
+        this.capacity = capacity;
+        sequence = new long[capacity];
+        receiveTime = new long[capacity];
+        droneTime = new long[capacity];
+        state = new int[capacity];
+        values = new int[FIELDS.length][capacity];
+        // Typical frames compress to a few bytes per sample
+        out = new BitWriter(capacity * 8);
+    }
+
+    /**
+     * Add a sample received at given time.
+     *
+     * @param d
+     * @param timeMillis
+     * @return true if the frame is full
+     */
+    public boolean add(NavData d, long timeMillis) {
+        if (size == capacity) {
+            throw new IllegalStateException("Batch is full");
+        }
+        sequence[size] = d.getSequenceNumber();
+        receiveTime[size] = timeMillis;
+        droneTime[size] = d.getDroneTime();
+        state[size] = d.getStateBits();
+        for (int f = 0; f < FIELDS.length; f++) {
+            values[f][size] = Float.floatToIntBits((float) FIELDS[f].read(d));
+        }
+        return ++size == capacity;
+    }
+
+    /**
+     * Number of samples collected.
+     *
+     * @return
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Receive time of the first collected sample.
+     *
+     * @return time or -1 if there are no samples
+     */
+    public long getFirstTime() {
+        return size > 0 ? receiveTime[0] : -1;
+    }
+
+    /**
+     * Encode the collected samples into a frame and start a new batch.
+     *
+     * @return
+     */
+    public byte[] encode() {
+        out.reset();
+        out.write(BatchFrame.MAGIC, 32);
+        out.write(size, 16);
+        out.write(FIELDS.length, 8);
+        BatchFrame.writeDeltas(out, sequence, size);
+        BatchFrame.writeDeltas(out, receiveTime, size);
+        BatchFrame.writeDeltas(out, droneTime, size);
+        BatchFrame.writeXor(out, state, size);
+        for (int[] column : values) {
+            BatchFrame.writeXor(out, column, size);
+        }
+        size = 0;
+        return out.toByteArray();
+    }
+}
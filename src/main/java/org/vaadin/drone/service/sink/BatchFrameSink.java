@@ -0,0 +1,83 @@
+package org.vaadin.drone.service.sink;
+
+import java.io.IOException;
+import org.vaadin.drone.service.NavData;
+
+/**
+ * Publishes navdata at full rate in batches, one {@link BatchFrame} per
+ * message, to avoid the per-message overhead of publishing every sample. A
+ * frame is published when it has the given number of samples or
+ * when it spans the given time, also when no more samples arrive. The
+ * remaining samples are published when the sink is closed.
+ *
+ * @author Sami Ekblad
+ */
+public class BatchFrameSink implements TelemetrySink {
+
+    public interface FramePublisher {
+
+        void publish(byte[] frame) throws IOException;
+    }
+
+    private final FramePublisher publisher;
+    private final long maxAgeMillis;
+    private final BatchFrameEncoder encoder;
+
+    /**
+     * Create new sink.
+     *
+     * @param publisher Publishes an encoded frame.
+     * @param batchSize Maximum samples per frame.
+     * @param maxAgeMillis Maximum time span of a frame.
+     */
+    public BatchFrameSink(FramePublisher publisher, int batchSize, long maxAgeMillis) {
+        this.publisher = publisher;
+        this.maxAgeMillis = maxAgeMillis;
+        this.encoder = new BatchFrameEncoder(batchSize);
+    }
+
+    @Override
+    public void accept(NavData d) throws IOException {
+        add(d, d.getReceiveTime());
+    }
+
+    /**
+     * Add a sample received at given time.
+     *
+     * @param d
+     * @param timeMillis
+     * @throws IOException if publishing a frame failed
+     */
+    public void add(NavData d, long timeMillis) throws IOException {
+        if (encoder.size() > 0 && timeMillis - encoder.getFirstTime() >= maxAgeMillis) {
+            flush();
+        }
+        if (encoder.add(d, timeMillis)) {
+            flush();
+        }
+    }
+
+    @Override
+    public void idle(long nowMillis) throws IOException {
+        if (encoder.size() > 0 && nowMillis - encoder.getFirstTime() >= maxAgeMillis) {
+            flush();
+        }
+    }
+
+    /**
+     * Publish the collected samples, if any.
+     *
+     * @throws IOException
+     */
+    public void flush() throws IOException {
+        if (encoder.size() == 0) {
+            return;
+        }
+        publisher.publish(encoder.encode());
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+    }
+}
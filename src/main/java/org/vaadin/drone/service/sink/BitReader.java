@@ -0,0 +1,43 @@
+package org.vaadin.drone.service.sink;
+
+/**
+ * Reads bit fields written by {@link BitWriter}.
+ *
+ * @author Sami Ekblad
+ */
+final class BitReader {
+
+    private final byte[] buf;
+    private long bits;
+
+    BitReader(byte[] buf) {
+        this.buf = buf;
+    }
+
+    /**
+     * Read an unsigned bit field.
+     *
+     * @param n Number of bits, 0-64.
+     * @return
+     * @throws IllegalArgumentException if the data ends
+     */
+    long read(int n) {
+        if (bits + n > (long) buf.length * 8) {
+            throw new IllegalArgumentException("Truncated batch frame");
+        }
+        long value = 0;
+        while (n > 0) {
+            int used = (int) (bits & 7);
+            int take = Math.min(8 - used, n);
+            int chunk = (buf[(int) (bits >>> 3)] >>> (8 - used - take)) & ((1 << take) - 1);
+            value = (value << take) | chunk;
+            bits += take;
+            n -= take;
+        }
+        return value;
+    }
+
+    boolean readBit() {
+        return read(1) != 0;
+    }
+}
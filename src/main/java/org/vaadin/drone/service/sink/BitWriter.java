@@ -0,0 +1,55 @@
+package org.vaadin.drone.service.sink;
+
+import java.util.Arrays;
+
+/**
+ * Appends bit fields to a growing byte array, most significant bit first.
+ *
+ * @author Sami Ekblad
+ */
+final class BitWriter {
+
+    private byte[] buf;
+    private long bits;
+
+    BitWriter(int capacity) {
+        buf = new byte[Math.max(16, capacity)];
+    }
+
+    /**
+     * Write the low bits of a value.
+     *
+     * @param value
+     * @param n Number of bits, 0-64.
+     */
+    void write(long value, int n) {
+        if (bits + n > (long) buf.length * 8) {
+            buf = Arrays.copyOf(buf, Math.max(buf.length * 2, (int) ((bits + n + 7) >>> 3)));
+        }
+        while (n > 0) {
+            int index = (int) (bits >>> 3);
+            int free = 8 - (int) (bits & 7);
+            if (free == 8) {
+                buf[index] = 0;
+            }
+            int take = Math.min(free, n);
+            int chunk = (int) (value >>> (n - take)) & ((1 << take) - 1);
+            buf[index] |= chunk << (free - take);
+            bits += take;
+            n -= take;
+        }
+    }
+
+    void reset() {
+        bits = 0;
+    }
+
+    /**
+     * Copy of the written bytes, the last byte padded with zero bits.
+     *
+     * @return
+     */
+    byte[] toByteArray() {
+        return Arrays.copyOf(buf, (int) ((bits + 7) >>> 3));
+    }
+}
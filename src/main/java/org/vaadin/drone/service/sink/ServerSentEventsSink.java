@@ -0,0 +1,116 @@
+package org.vaadin.drone.service.sink;
+
+import com.google.gson.Gson;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.vaadin.drone.service.NavData;
+
+/**
+ * Streams navdata samples as JSON to browsers and other HTTP clients using
+ * server-sent events.
+ *
+ * Every client has its own small queue served by its own thread, so a slow
+ * client drops its oldest samples without delaying the others.
+ *
+ * @author Sami Ekblad
+ */
+public class ServerSentEventsSink implements TelemetrySink {
+
+    public static final String PATH = "/telemetry";
+
+    private static final byte[] CLOSE = new byte[0];
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final int clientQueue;
+    private final List<ArrayBlockingQueue<byte[]>> clients = new CopyOnWriteArrayList<>();
+    private final Gson gson = new Gson();
+
+    /**
+     * Create new sink and start serving.
+     *
+     * @param port HTTP port.
+     * @param clientQueue Number of events queued per client.
+     * @throws IOException
+     */
+    public ServerSentEventsSink(int port, int clientQueue) throws IOException {
+        this.clientQueue = clientQueue;
+        executor = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "sse-client");
+            t.setDaemon(true);
+            return t;
+        });
+        server = HttpServer.create(new InetSocketAddress(port), 0);
+        server.createContext(PATH, this::serve);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    /**
+     * Port the server listens to.
+     *
+     * @return
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public int getClientCount() {
+        return clients.size();
+    }
+
+    @Override
+    public void accept(NavData d) throws IOException {
+        if (clients.isEmpty()) {
+            return;
+        }
+        byte[] event = ("id: " + d.getSequenceNumber() + "\ndata: " + gson.toJson(d) + "\n\n").getBytes(StandardCharsets.UTF_8);
+        for (ArrayBlockingQueue<byte[]> q : clients) {
+            while (!q.offer(event)) {
+                q.poll();
+            }
+        }
+    }
+
+    private void serve(HttpExchange exchange) throws IOException {
+        ArrayBlockingQueue<byte[]> queue = new ArrayBlockingQueue<>(clientQueue);
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+        exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+        exchange.sendResponseHeaders(200, 0);
+        clients.add(queue);
+        Logger.getLogger(ServerSentEventsSink.class.getName()).log(Level.FINE, "SSE client " + exchange.getRemoteAddress());
+        try (OutputStream out = exchange.getResponseBody()) {
+            byte[] event;
+            while ((event = queue.take()) != CLOSE) {
+                out.write(event);
+                out.flush();
+            }
+        } catch (IOException | InterruptedException e) {
+            // Client went away
+        } finally {
+            clients.remove(queue);
+            exchange.close();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (ArrayBlockingQueue<byte[]> q : clients) {
+            q.clear();
+            q.offer(CLOSE);
+        }
+        server.stop(0);
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,198 @@
+package org.vaadin.drone.service.sink;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.vaadin.drone.service.ARDrone;
+import org.vaadin.drone.service.NavData;
+
+/**
+ * Fans navdata out to telemetry sinks.
+ *
+ * Every sink has its own bounded queue and thread. Samples are thinned to the
+ * sink's interval in the navdata thread before they are queued. When a sink
+ * falls behind and its queue is full, the oldest queued sample is dropped, so
+ * a sink always catches up with the latest data instead of blocking the
+ * others. Dropped samples are logged at most every ten seconds per sink.
+ *
+ * When no sample arrives for {@link #IDLE_INTERVAL} ms, the sink's
+ * {@link TelemetrySink#idle(long)} is called.
+ *
+ * Register with {@link ARDrone#addPacketCallback(ARDrone.DroneStateCallback)}.
+ *
+ * @author Sami Ekblad
+ */
+public class SinkDispatcher implements ARDrone.DroneStateCallback {
+
+    /**
+     * Time without samples before a sink is told it is idle, in milliseconds.
+     */
+    public static final long IDLE_INTERVAL = 100;
+    private static final long DROP_REPORT_INTERVAL = 10000;
+
+    private final List<Worker> workers = new CopyOnWriteArrayList<>();
+
+    /**
+     * Add a sink.
+     *
+     * @param name Name of the sink, used for the thread and logging.
+     * @param sink
+     * @param capacity Number of samples queued for the sink.
+     * @param interval Minimum interval between samples in milliseconds, 0 for
+     * every sample.
+     */
+    public void add(String name, TelemetrySink sink, int capacity, LongSupplier interval) {
+        Worker w = new Worker(name, sink, capacity, interval);
+        workers.add(w);
+        w.start();
+    }
+
+    @Override
+    public void onDroneStateChanged(NavData latestState) {
+        offer(latestState, System.currentTimeMillis());
+    }
+
+    /**
+     * Queue a sample received at given time to the sinks.
+     *
+     * @param d
+     * @param timeMillis
+     */
+    public void offer(NavData d, long timeMillis) {
+        for (Worker w : workers) {
+            w.offer(d, timeMillis);
+        }
+    }
+
+    /**
+     * Number of samples dropped because the sink was too slow.
+     *
+     * @param name
+     * @return
+     */
+    public long getDropped(String name) {
+        for (Worker w : workers) {
+            if (w.name.equals(name)) {
+                return w.dropped;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Stop the sinks. Samples still queued are delivered first.
+     */
+    public void close() {
+        workers.forEach(Worker::stop);
+        workers.clear();
+    }
+
+    private static class Worker {
+
+        private static final NavData STOP = new NavData(-1, 0, 0);
+        private static final long STOP_TIMEOUT = 1000;
+
+        private final String name;
+        private final TelemetrySink sink;
+        private final ArrayBlockingQueue<NavData> queue;
+        private final LongSupplier interval;
+        private long lastTime = Long.MIN_VALUE;
+        private volatile long dropped;
+        private boolean failing;
+        private long reportedDropped;
+        private long lastDropReport;
+        private Thread thread;
+
+        private Worker(String name, TelemetrySink sink, int capacity, LongSupplier interval) {
+            this.name = name;
+            this.sink = sink;
+            this.queue = new ArrayBlockingQueue<>(capacity);
+            this.interval = interval;
+        }
+
+        /* Called from the navdata thread only */
+        private void offer(NavData d, long timeMillis) {
+            if (timeMillis < lastTime + interval.getAsLong()) {
+                return;
+            }
+            lastTime = timeMillis;
+            while (!queue.offer(d)) {
+                if (queue.poll() != null) {
+                    dropped++;
+                }
+            }
+        }
+
+        private void start() {
+            thread = new Thread(this::run, "sink-" + name);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        private void run() {
+            try {
+                NavData d;
+                while ((d = queue.poll(IDLE_INTERVAL, TimeUnit.MILLISECONDS)) != STOP) {
+                    deliver(d);
+                    reportDropped();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            try {
+                sink.close();
+            } catch (IOException e) {
+                Logger.getLogger(SinkDispatcher.class.getName()).log(Level.WARNING, "Failed to close sink " + name, e);
+            }
+        }
+
+        private void reportDropped() {
+            long now = System.currentTimeMillis();
+            long d = dropped;
+            if (d != reportedDropped && now - lastDropReport >= DROP_REPORT_INTERVAL) {
+                Logger.getLogger(SinkDispatcher.class.getName()).log(Level.WARNING, "Sink " + name + " too slow, "
+                        + (d - reportedDropped) + " samples dropped, " + d + " in total");
+                reportedDropped = d;
+                lastDropReport = now;
+            }
+        }
+
+        /* Sample or null when idle */
+        private void deliver(NavData d) {
+            try {
+                if (d != null) {
+                    sink.accept(d);
+                } else {
+                    sink.idle(System.currentTimeMillis());
+                }
+                if (failing) {
+                    failing = false;
+                    Logger.getLogger(SinkDispatcher.class.getName()).log(Level.INFO, "Sink " + name + " recovered");
+                }
+            } catch (IOException | RuntimeException e) {
+                // Log once per failure period, not for every sample
+                if (!failing) {
+                    failing = true;
+                    Logger.getLogger(SinkDispatcher.class.getName()).log(Level.WARNING, "Sink " + name + " failed", e);
+                }
+            }
+        }
+
+        private void stop() {
+            try {
+                if (queue.offer(STOP, STOP_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                    thread.join(STOP_TIMEOUT);
+                } else {
+                    thread.interrupt();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package org.vaadin.drone.service.sink;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import org.vaadin.drone.service.NavData;
+import org.vaadin.drone.service.TelemetryField;
+
+/**
+ * Compact binary encoding of a navdata sample for local consumers.
+ *
+ * Layout, in network byte order:
+ *
+ * <pre>
+ * int    magic 0x41445431 ("ADT1")
+ * long   navdata sequence number
+ * int    state bits
+ * long   bridge receive time, epoch ms
+ * long   drone time, us, -1 if not known
+ * byte   number of values n
+ * float  n values in {@link TelemetryField} order
+ * </pre>
+ *
+ * New fields are appended to the end of {@link TelemetryField}, so decoders
+ * can read the values they know and ignore the rest.
+ *
+ * @author Sami Ekblad
+ */
+public class TelemetryRecord {
+
+    public static final int MAGIC = 0x41445431;
+    private static final int HEADER_SIZE = 4 + 8 + 4 + 8 + 8 + 1;
+    private static final TelemetryField[] FIELDS = TelemetryField.values();
+
+    /**
+     * Size of an encoded sample in bytes.
+     */
+    public static final int SIZE = HEADER_SIZE + FIELDS.length * 4;
+
+    private final long sequence;
+    private final int state;
+    private final long receiveTime;
+    private final long droneTime;
+    private final float[] values;
+
+    private TelemetryRecord(long sequence, int state, long receiveTime, long droneTime, float[] values) {
+        this.sequence = sequence;
+        this.state = state;
+        this.receiveTime = receiveTime;
+        this.droneTime = droneTime;
+        this.values = values;
+    }
+
+    /**
+     * Encode a sample at the buffer position.
+     *
+     * @param d
+     * @param buf Buffer with at least {@link #SIZE} bytes remaining.
+     */
+    public static void encode(NavData d, ByteBuffer buf) {
+        buf.putInt(MAGIC)
+                .putLong(d.getSequenceNumber())
+                .putInt(d.getStateBits())
+                .putLong(d.getReceiveTime())
+                .putLong(d.getDroneTime())
+                .put((byte) FIELDS.length);
+        for (TelemetryField f : FIELDS) {
+            buf.putFloat((float) f.read(d));
+        }
+    }
+
+    /**
+     * Decode a sample from the buffer position.
+     *
+     * @param buf
+     * @return
+     * @throws IllegalArgumentException if the data is not a valid sample
+     */
+    public static TelemetryRecord decode(ByteBuffer buf) {
+        try {
+            if (buf.getInt() != MAGIC) {
+                throw new IllegalArgumentException("Not a telemetry record");
+            }
+            long sequence = buf.getLong();
+            int state = buf.getInt();
+            long receiveTime = buf.getLong();
+            long droneTime = buf.getLong();
+            float[] values = new float[buf.get() & 0xFF];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = buf.getFloat();
+            }
+            return new TelemetryRecord(sequence, state, receiveTime, droneTime, values);
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated telemetry record", e);
+        }
+    }
+
+    public long getSequenceNumber() {
+        return sequence;
+    }
+
+    public int getStateBits() {
+        return state;
+    }
+
+    public long getReceiveTime() {
+        return receiveTime;
+    }
+
+    public long getDroneTime() {
+        return droneTime;
+    }
+
+    /**
+     * Value of a field.
+     *
+     * @param field
+     * @return value or NaN if not included in the record
+     */
+    public float getValue(TelemetryField field) {
+        return field.ordinal() < values.length ? values[field.ordinal()] : Float.NaN;
+    }
+}
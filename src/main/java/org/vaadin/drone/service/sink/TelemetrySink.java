@@ -0,0 +1,30 @@
+package org.vaadin.drone.service.sink;
+
+import java.io.IOException;
+import org.vaadin.drone.service.NavData;
+
+/**
+ * Consumer of navdata samples.
+ *
+ * Each sink is called from its own thread through {@link SinkDispatcher}, so a
+ * slow sink does not delay the navdata thread or other sinks.
+ *
+ * @author Sami Ekblad
+ */
+public interface TelemetrySink {
+
+    void accept(NavData d) throws IOException;
+
+    /**
+     * Called when no sample has arrived for a while, e.g. after the navdata
+     * link was lost, so that buffered samples can be published.
+     *
+     * @param nowMillis Current time, epoch milliseconds.
+     * @throws IOException
+     */
+    default void idle(long nowMillis) throws IOException {
+    }
+
+    default void close() throws IOException {
+    }
+}
@@ -0,0 +1,49 @@
+package org.vaadin.drone.service.sink;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.InetAddress;
+import java.net.MulticastSocket;
+import java.nio.ByteBuffer;
+import org.vaadin.drone.service.NavData;
+
+/**
+ * Sends navdata samples to a UDP multicast group, one {@link TelemetryRecord}
+ * per datagram. Intended for consumers on the same LAN that need the data
+ * with the lowest latency.
+ *
+ * @author Sami Ekblad
+ */
+public class UdpMulticastSink implements TelemetrySink {
+
+    private final MulticastSocket socket;
+    private final ByteBuffer buf = ByteBuffer.allocate(TelemetryRecord.SIZE);
+    private final DatagramPacket packet;
+
+    /**
+     * Create new sink.
+     *
+     * @param group Multicast group address.
+     * @param port Destination port.
+     * @param ttl Time to live, 1 to stay in the local network.
+     * @throws IOException
+     */
+    public UdpMulticastSink(InetAddress group, int port, int ttl) throws IOException {
+        socket = new MulticastSocket();
+        socket.setTimeToLive(ttl);
+        packet = new DatagramPacket(buf.array(), buf.capacity(), group, port);
+    }
+
+    @Override
+    public void accept(NavData d) throws IOException {
+        buf.clear();
+        TelemetryRecord.encode(d, buf);
+        packet.setLength(buf.position());
+        socket.send(packet);
+    }
+
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+}
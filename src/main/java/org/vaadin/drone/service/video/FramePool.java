@@ -0,0 +1,49 @@
+package org.vaadin.drone.service.video;
+
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * Fixed size pool of direct frame buffers.
+ *
+ * @author Sami Ekblad
+ */
+public class FramePool {
+
+    private final ArrayBlockingQueue<VideoFrame> free;
+    private final int frameCapacity;
+
+    /**
+     * Create new pool.
+     *
+     * @param frames Number of frames in the pool.
+     * @param frameCapacity Maximum payload size of a frame in bytes.
+     */
+    public FramePool(int frames, int frameCapacity) {
+        this.frameCapacity = frameCapacity;
+        free = new ArrayBlockingQueue<>(frames);
+        for (int i = 0; i < frames; i++) {
+            free.add(new VideoFrame(this, frameCapacity));
+        }
+    }
+
+    /**
+     * Take a free frame.
+     *
+     * @return frame or null if all frames are in use
+     */
+    public VideoFrame acquire() {
+        return free.poll();
+    }
+
+    void release(VideoFrame frame) {
+        free.offer(frame);
+    }
+
+    public int getFrameCapacity() {
+        return frameCapacity;
+    }
+
+    public int getAvailable() {
+        return free.size();
+    }
+}
@@ -0,0 +1,50 @@
+package org.vaadin.drone.service.video;
+
+import java.nio.ByteBuffer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.eclipse.paho.client.mqttv3.MqttException;
+import org.vaadin.drone.service.MqttPublisher;
+
+/**
+ * Publishes keyframes as snapshots over MQTT.
+ *
+ * The payload is the H.264 keyframe as received from the drone, which can be
+ * decoded on its own. At most one snapshot is published per interval.
+ *
+ * @author Sami Ekblad
+ */
+public class KeyframeSnapshotSink implements VideoFrameSink {
+
+    private final MqttPublisher publisher;
+    private final String topic;
+    private final long intervalMillis;
+    private long lastPublished;
+
+    public KeyframeSnapshotSink(MqttPublisher publisher, String topic, long intervalMillis) {
+        this.publisher = publisher;
+        this.topic = topic;
+        this.intervalMillis = intervalMillis;
+    }
+
+    @Override
+    public void onFrame(VideoFrame frame) {
+        try {
+            long now = System.currentTimeMillis();
+            if (!frame.isKeyFrame() || now - lastPublished < intervalMillis) {
+                return;
+            }
+            // MQTT needs a heap array, this is the only copy of the payload
+            ByteBuffer payload = frame.getPayload();
+            byte[] bytes = new byte[payload.remaining()];
+            payload.get(bytes);
+            publisher.publish(topic, bytes, true);
+            lastPublished = now;
+        } catch (MqttException ex) {
+            Logger.getLogger(KeyframeSnapshotSink.class.getName()).log(Level.WARNING, "Snapshot publish failed", ex);
+        } finally {
+            frame.release();
+        }
+    }
+
+}
@@ -0,0 +1,198 @@
+package org.vaadin.drone.service.video;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Parrot Video Encapsulation (PaVE) header preceding each frame in the AR.Drone
+ * 2 video stream.
+ *
+ * Instances are mutable so that a single header can be reused for every frame.
+ *
+ * @author Sami Ekblad
+ */
+public class PaVEHeader {
+
+    /* "PaVE" in little endian */
+    public static final int SIGNATURE = 0x45566150;
+    /* Bytes needed to know the header and payload sizes */
+    public static final int PREFIX_SIZE = 12;
+    public static final int HEADER_SIZE = 64;
+
+    public static final int FRAME_TYPE_UNKNOWN = 0;
+    public static final int FRAME_TYPE_IDR = 1;
+    public static final int FRAME_TYPE_I = 2;
+    public static final int FRAME_TYPE_P = 3;
+    public static final int FRAME_TYPE_HEADERS = 4;
+
+    private int version;
+    private int codec;
+    private int headerSize;
+    private int payloadSize;
+    private int encodedWidth;
+    private int encodedHeight;
+    private int displayWidth;
+    private int displayHeight;
+    private long frameNumber;
+    private long timestamp;
+    private int frameType;
+
+    /**
+     * Parse the size prefix of the header.
+     *
+     * @param b Buffer positioned at the signature with at least
+     * {@link #PREFIX_SIZE} bytes remaining.
+     * @return false if the signature does not match
+     */
+    public boolean parsePrefix(ByteBuffer b) {
+        b.order(ByteOrder.LITTLE_ENDIAN);
+        int start = b.position();
+        if (b.getInt(start) != SIGNATURE) {
+            return false;
+        }
+        version = b.get(start + 4) & 0xFF;
+        codec = b.get(start + 5) & 0xFF;
+        headerSize = b.getShort(start + 6) & 0xFFFF;
+        payloadSize = b.getInt(start + 8);
+        return true;
+    }
+
+    /**
+     * Parse the rest of the header after {@link #parsePrefix(ByteBuffer)}.
+     *
+     * @param b Buffer positioned at the signature with the full header
+     * remaining.
+     */
+    public void parse(ByteBuffer b) {
+        b.order(ByteOrder.LITTLE_ENDIAN);
+        int start = b.position();
+        encodedWidth = b.getShort(start + 12) & 0xFFFF;
+        encodedHeight = b.getShort(start + 14) & 0xFFFF;
+        displayWidth = b.getShort(start + 16) & 0xFFFF;
+        displayHeight = b.getShort(start + 18) & 0xFFFF;
+        frameNumber = b.getInt(start + 20) & 0xFFFFFFFFL;
+        timestamp = b.getInt(start + 24) & 0xFFFFFFFFL;
+        frameType = b.get(start + 30) & 0xFF;
+    }
+
+    /**
+     * Write a header, used for testing and recording.
+     *
+     * @param b
+     */
+    public void write(ByteBuffer b) {
+        b.order(ByteOrder.LITTLE_ENDIAN);
+        int start = b.position();
+        for (int i = 0; i < HEADER_SIZE; i++) {
+            b.put(start + i, (byte) 0);
+        }
+        b.putInt(start, SIGNATURE);
+        b.put(start + 4, (byte) version);
+        b.put(start + 5, (byte) codec);
+        b.putShort(start + 6, (short) headerSize);
+        b.putInt(start + 8, payloadSize);
+        b.putShort(start + 12, (short) encodedWidth);
+        b.putShort(start + 14, (short) encodedHeight);
+        b.putShort(start + 16, (short) displayWidth);
+        b.putShort(start + 18, (short) displayHeight);
+        b.putInt(start + 20, (int) frameNumber);
+        b.putInt(start + 24, (int) timestamp);
+        b.put(start + 28, (byte) 1);
+        b.put(start + 30, (byte) frameType);
+        b.putInt(start + 48, payloadSize);
+        b.position(start + headerSize);
+    }
+
+    public boolean isKeyFrame() {
+        return frameType == FRAME_TYPE_IDR || frameType == FRAME_TYPE_I;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public void setVersion(int version) {
+        this.version = version;
+    }
+
+    public int getCodec() {
+        return codec;
+    }
+
+    public void setCodec(int codec) {
+        this.codec = codec;
+    }
+
+    public int getHeaderSize() {
+        return headerSize;
+    }
+
+    public void setHeaderSize(int headerSize) {
+        this.headerSize = headerSize;
+    }
+
+    public int getPayloadSize() {
+        return payloadSize;
+    }
+
+    public void setPayloadSize(int payloadSize) {
+        this.payloadSize = payloadSize;
+    }
+
+    public int getEncodedWidth() {
+        return encodedWidth;
+    }
+
+    public void setEncodedWidth(int encodedWidth) {
+        this.encodedWidth = encodedWidth;
+    }
+
+    public int getEncodedHeight() {
+        return encodedHeight;
+    }
+
+    public void setEncodedHeight(int encodedHeight) {
+        this.encodedHeight = encodedHeight;
+    }
+
+    public int getDisplayWidth() {
+        return displayWidth;
+    }
+
+    public void setDisplayWidth(int displayWidth) {
+        this.displayWidth = displayWidth;
+    }
+
+    public int getDisplayHeight() {
+        return displayHeight;
+    }
+
+    public void setDisplayHeight(int displayHeight) {
+        this.displayHeight = displayHeight;
+    }
+
+    public long getFrameNumber() {
+        return frameNumber;
+    }
+
+    public void setFrameNumber(long frameNumber) {
+        this.frameNumber = frameNumber;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public void setTimestamp(long timestamp) {
+        this.timestamp = timestamp;
+    }
+
+    public int getFrameType() {
+        return frameType;
+    }
+
+    public void setFrameType(int frameType) {
+        this.frameType = frameType;
+    }
+
+}
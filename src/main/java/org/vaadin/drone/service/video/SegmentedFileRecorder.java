@@ -0,0 +1,79 @@
+package org.vaadin.drone.service.video;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Records the video stream into H.264 elementary stream files.
+ *
+ * A new segment is started at the first keyframe after the segment length has
+ * passed, so every segment can be played on its own. Frames are written from
+ * their direct buffers straight to the file channel.
+ *
+ * @author Sami Ekblad
+ */
+public class SegmentedFileRecorder implements VideoFrameSink {
+
+    private final Path directory;
+    private final long segmentMillis;
+    private FileChannel file;
+    private long segmentStart;
+
+    public SegmentedFileRecorder(Path directory, long segmentMillis) {
+        this.directory = directory;
+        this.segmentMillis = segmentMillis;
+    }
+
+    @Override
+    public void onFrame(VideoFrame frame) {
+        try {
+            long now = System.currentTimeMillis();
+            if (frame.isKeyFrame() && (file == null || now - segmentStart >= segmentMillis)) {
+                nextSegment(now);
+            }
+            if (file != null) {
+                ByteBuffer payload = frame.getPayload();
+                while (payload.hasRemaining()) {
+                    file.write(payload);
+                }
+            }
+        } catch (IOException ex) {
+            Logger.getLogger(SegmentedFileRecorder.class.getName()).log(Level.SEVERE, "Video recording failed", ex);
+            closeSegment();
+        } finally {
+            frame.release();
+        }
+    }
+
+    private void nextSegment(long now) throws IOException {
+        closeSegment();
+        Files.createDirectories(directory);
+        String name = "video-" + new SimpleDateFormat("yyyyMMdd-HHmmss-SSS").format(new Date(now)) + ".h264";
+        file = FileChannel.open(directory.resolve(name), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        segmentStart = now;
+    }
+
+    private void closeSegment() {
+        if (file != null) {
+            try {
+                file.close();
+            } catch (IOException ignored) {
+            }
+            file = null;
+        }
+    }
+
+    @Override
+    public void close() {
+        closeSegment();
+    }
+
+}
@@ -0,0 +1,104 @@
+package org.vaadin.drone.service.video;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * One encoded video frame in a pooled direct buffer.
+ *
+ * Frames are shared between sinks without copying. Every sink that receives a
+ * frame must call {@link #release()} when done with it, and the frame returns
+ * to its pool when the last reference is released. Sinks must not modify the
+ * payload buffer; use {@link #getPayload()} which returns a read-only view.
+ *
+ * @author Sami Ekblad
+ */
+public final class VideoFrame {
+
+    private final FramePool pool;
+    private final ByteBuffer buffer;
+    private final AtomicInteger references = new AtomicInteger();
+    private long frameNumber;
+    private long timestamp;
+    private int frameType;
+    private int width;
+    private int height;
+
+    VideoFrame(FramePool pool, int capacity) {
+        this.pool = pool;
+        this.buffer = ByteBuffer.allocateDirect(capacity);
+    }
+
+    void reset(PaVEHeader header) {
+        frameNumber = header.getFrameNumber();
+        timestamp = header.getTimestamp();
+        frameType = header.getFrameType();
+        width = header.getDisplayWidth();
+        height = header.getDisplayHeight();
+        buffer.clear();
+        buffer.limit(header.getPayloadSize());
+    }
+
+    /* Buffer for filling in the payload */
+    ByteBuffer buffer() {
+        return buffer;
+    }
+
+    void retain(int count) {
+        references.addAndGet(count);
+    }
+
+    /**
+     * Release a reference to this frame.
+     */
+    public void release() {
+        if (references.decrementAndGet() == 0) {
+            pool.release(this);
+        }
+    }
+
+    /**
+     * Read-only view of the encoded payload.
+     *
+     * @return
+     */
+    public ByteBuffer getPayload() {
+        ByteBuffer b = buffer.asReadOnlyBuffer();
+        b.flip();
+        return b;
+    }
+
+    public int getPayloadSize() {
+        return buffer.position();
+    }
+
+    public boolean isKeyFrame() {
+        return frameType == PaVEHeader.FRAME_TYPE_IDR || frameType == PaVEHeader.FRAME_TYPE_I;
+    }
+
+    public long getFrameNumber() {
+        return frameNumber;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public int getFrameType() {
+        return frameType;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public String toString() {
+        return "VideoFrame{" + "frameNumber=" + frameNumber + ", frameType=" + frameType + ", size=" + getPayloadSize() + '}';
+    }
+
+}
@@ -0,0 +1,17 @@
+package org.vaadin.drone.service.video;
+
+/**
+ * Consumer of video frames.
+ *
+ * Each sink is called from its own thread. The sink must call
+ * {@link VideoFrame#release()} for every frame it receives.
+ *
+ * @author Sami Ekblad
+ */
+public interface VideoFrameSink {
+
+    void onFrame(VideoFrame frame);
+
+    default void close() {
+    }
+}
@@ -0,0 +1,296 @@
+package org.vaadin.drone.service.video;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.SocketChannel;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * AR.Drone 2 video stream receiver.
+ *
+ * Connects to the TCP video port, parses the PaVE headers and reads each frame
+ * payload directly into a pooled direct buffer. Frames are then handed to the
+ * sinks without copying. Each sink has a bounded queue and thread of its own.
+ * When a sink lags behind, non-keyframes are dropped until the next keyframe,
+ * and a keyframe replaces anything still waiting in the queue.
+ *
+ * @author Sami Ekblad
+ */
+public class VideoStream {
+
+    private static final int RECONNECT_DELAY = 1000;
+    private static final int CONNECT_TIMEOUT = 3000;
+
+    private final InetSocketAddress address;
+    private final FramePool pool;
+    private final int sinkQueueSize;
+    private final List<SinkQueue> sinks = new CopyOnWriteArrayList<>();
+    private final ByteBuffer header = ByteBuffer.allocateDirect(PaVEHeader.HEADER_SIZE * 4).order(ByteOrder.LITTLE_ENDIAN);
+    private final ByteBuffer skip = ByteBuffer.allocateDirect(64 * 1024);
+    private final PaVEHeader pave = new PaVEHeader();
+
+    private volatile boolean running;
+    private volatile SocketChannel channel;
+    private boolean waitKeyFrame = true;
+    private long frames;
+    private long dropped;
+
+    /**
+     * Create new stream.
+     *
+     * @param address Video port of the drone.
+     * @param pool Frame buffers.
+     * @param sinkQueueSize Number of frames that may wait for each sink.
+     */
+    public VideoStream(InetSocketAddress address, FramePool pool, int sinkQueueSize) {
+        this.address = address;
+        this.pool = pool;
+        this.sinkQueueSize = sinkQueueSize;
+    }
+
+    public void addSink(VideoFrameSink sink) {
+        SinkQueue q = new SinkQueue(sink);
+        sinks.add(q);
+        if (running) {
+            q.start();
+        }
+    }
+
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        sinks.forEach(SinkQueue::start);
+        Thread t = new Thread(() -> {
+            while (running) {
+                try {
+                    receive();
+                } catch (IOException e) {
+                    if (running) {
+                        Logger.getLogger(VideoStream.class.getName()).log(Level.FINE, "Video connection lost", e);
+                        sleep(RECONNECT_DELAY);
+                    }
+                }
+            }
+            sinks.forEach(SinkQueue::stop);
+        }, "video-receiver");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    public void stop() {
+        running = false;
+        SocketChannel c = channel;
+        if (c != null) {
+            try {
+                c.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    /**
+     * Number of frames received.
+     *
+     * @return
+     */
+    public synchronized long getFrames() {
+        return frames;
+    }
+
+    /**
+     * Number of frames dropped before dispatch because no buffer was available
+     * or the frame was too large.
+     *
+     * @return
+     */
+    public synchronized long getDropped() {
+        return dropped;
+    }
+
+    private void receive() throws IOException {
+        try (SocketChannel c = SocketChannel.open()) {
+            channel = c;
+            c.socket().connect(address, CONNECT_TIMEOUT);
+            Logger.getLogger(VideoStream.class.getName()).log(Level.INFO, "Connected to video stream " + address);
+            waitKeyFrame = true;
+            header.clear().limit(0);
+            while (running) {
+                readFrame(c);
+            }
+        } finally {
+            channel = null;
+        }
+    }
+
+    private void readFrame(SocketChannel c) throws IOException {
+        // Find the signature, resyncing byte by byte after garbage
+        fill(c, PaVEHeader.PREFIX_SIZE);
+        while (!pave.parsePrefix(header)) {
+            header.position(header.position() + 1);
+            fill(c, PaVEHeader.PREFIX_SIZE);
+        }
+        int headerSize = pave.getHeaderSize();
+        if (headerSize < PaVEHeader.PREFIX_SIZE || headerSize > header.capacity()) {
+            header.position(header.position() + 1);
+            return;
+        }
+        fill(c, headerSize);
+        pave.parse(header);
+        header.position(header.position() + headerSize);
+
+        int size = pave.getPayloadSize();
+        boolean key = pave.isKeyFrame();
+        VideoFrame frame = null;
+        if (size >= 0 && size <= pool.getFrameCapacity() && (key || !waitKeyFrame)) {
+            frame = pool.acquire();
+        }
+        synchronized (this) {
+            frames++;
+            if (frame == null) {
+                dropped++;
+            }
+        }
+        if (frame == null) {
+            // Following P-frames can't be decoded without this one
+            waitKeyFrame = true;
+            skip(c, size);
+            return;
+        }
+        waitKeyFrame = false;
+
+        frame.reset(pave);
+        ByteBuffer payload = frame.buffer();
+        while (payload.hasRemaining()) {
+            if (c.read(payload) < 0) {
+                frame.retain(1);
+                frame.release();
+                throw new EOFException();
+            }
+        }
+        dispatch(frame);
+    }
+
+    private void dispatch(VideoFrame frame) {
+        // Hold one reference while dispatching so the frame can't return early
+        frame.retain(sinks.size() + 1);
+        for (SinkQueue q : sinks) {
+            q.offer(frame);
+        }
+        frame.release();
+    }
+
+    /*
+     * Ensure the header buffer has at least n bytes remaining. Never reads past
+     * them, so the payload is always read straight into the frame buffer.
+     */
+    private void fill(SocketChannel c, int n) throws IOException {
+        if (header.remaining() >= n) {
+            return;
+        }
+        header.compact();
+        header.limit(n);
+        while (header.position() < n) {
+            if (c.read(header) < 0) {
+                throw new EOFException();
+            }
+        }
+        header.flip();
+    }
+
+    private void skip(SocketChannel c, int n) throws IOException {
+        while (n > 0) {
+            skip.clear().limit(Math.min(n, skip.capacity()));
+            int r = c.read(skip);
+            if (r < 0) {
+                throw new EOFException();
+            }
+            n -= r;
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException ignored) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Bounded frame queue and thread for one sink.
+     */
+    private class SinkQueue {
+
+        private final VideoFrameSink sink;
+        private final ArrayBlockingQueue<VideoFrame> queue = new ArrayBlockingQueue<>(sinkQueueSize);
+        private boolean waitKeyFrame;
+        private volatile boolean active;
+        private long dropped;
+
+        private SinkQueue(VideoFrameSink sink) {
+            this.sink = sink;
+        }
+
+        private synchronized void offer(VideoFrame frame) {
+            if (frame.isKeyFrame()) {
+                if (queue.remainingCapacity() == 0) {
+                    // Anything queued is older than this keyframe
+                    VideoFrame old;
+                    while ((old = queue.poll()) != null) {
+                        old.release();
+                        dropped++;
+                    }
+                }
+                waitKeyFrame = false;
+            } else if (waitKeyFrame || queue.remainingCapacity() == 0) {
+                waitKeyFrame = true;
+                frame.release();
+                dropped++;
+                Logger.getLogger(VideoStream.class.getName()).log(Level.FINEST, "Sink lagging, dropped frame");
+                return;
+            }
+            queue.offer(frame);
+        }
+
+        private void start() {
+            active = true;
+            Thread t = new Thread(() -> {
+                while (active) {
+                    try {
+                        VideoFrame f = queue.poll(RECONNECT_DELAY, TimeUnit.MILLISECONDS);
+                        if (f != null) {
+                            try {
+                                sink.onFrame(f);
+                            } catch (RuntimeException e) {
+                                Logger.getLogger(VideoStream.class.getName()).log(Level.SEVERE, "Video sink failed", e);
+                            }
+                        }
+                    } catch (InterruptedException e) {
+                        active = false;
+                    }
+                }
+                VideoFrame f;
+                while ((f = queue.poll()) != null) {
+                    f.release();
+                }
+                sink.close();
+            }, "video-sink");
+            t.setDaemon(true);
+            t.start();
+        }
+
+        private void stop() {
+            active = false;
+        }
+    }
+}
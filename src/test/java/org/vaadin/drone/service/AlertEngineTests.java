@@ -0,0 +1,58 @@
+package org.vaadin.drone.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class AlertEngineTests {
+
+    private final List<String> alerts = new ArrayList<>();
+
+    private static AlertRule rule(String name, String field, String condition, double threshold, double hysteresis, long debounce, boolean absolute) {
+        AlertRule r = new AlertRule();
+        r.setName(name);
+        r.setField(field);
+        r.setCondition(condition);
+        r.setThreshold(threshold);
+        r.setHysteresis(hysteresis);
+        r.setDebounce(debounce);
+        r.setAbsolute(absolute);
+        return r;
+    }
+
+    private AlertEngine createEngine(AlertRule... rules) {
+        return new AlertEngine(Arrays.asList(rules), (rule, active, value, time) -> alerts.add(rule.getName() + "=" + active + "@" + time));
+    }
+
+    @Test
+    public void hysteresisPreventsFlapping() {
+        AlertEngine engine = createEngine(rule("batteryLow", "battery", "below", 20, 5, 0, false));
+        int[] battery = {30, 21, 19, 20, 21, 24, 19, 25, 26, 19};
+        for (int t = 0; t < battery.length; t++) {
+            engine.add(NavDataPackets.demo(t, 0, battery[t], 0, 0, 0, 0), t);
+        }
+        assertEquals(Arrays.asList("batteryLow=true@2", "batteryLow=false@7", "batteryLow=true@9"), alerts);
+        assertTrue(engine.isActive(0));
+    }
+
+    @Test
+    public void debounceIgnoresSpikes() {
+        AlertEngine engine = createEngine(rule("roll", "phi", "above", 30000, 5000, 100, true));
+        engine.add(NavDataPackets.demo(0, 0, 100, 0, -40000, 0, 0), 0);
+        engine.add(NavDataPackets.demo(1, 0, 100, 0, 0, 0, 0), 50);
+        engine.add(NavDataPackets.demo(2, 0, 100, 0, -40000, 0, 0), 100);
+        engine.add(NavDataPackets.demo(3, 0, 100, 0, 35000, 0, 0), 150);
+        assertFalse(engine.isActive(0));
+        engine.add(NavDataPackets.demo(4, 0, 100, 0, 31000, 0, 0), 200);
+        assertEquals(Arrays.asList("roll=true@200"), alerts);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownFieldIsRejected() {
+        createEngine(rule("x", "speed", "above", 1, 0, 0, false));
+    }
+}
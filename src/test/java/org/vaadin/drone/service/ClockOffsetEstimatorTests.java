@@ -0,0 +1,55 @@
+package org.vaadin.drone.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class ClockOffsetEstimatorTests {
+
+    @Test
+    public void timeOptionIsDecoded() {
+        assertEquals(12345678, NavDataPackets.time(1, 12345678).getDroneTime());
+        assertEquals(-1, NavDataPackets.demo(1, 0, 0, 0, 0, 0, 0).getDroneTime());
+    }
+
+    @Test
+    public void minimumDelayGivesOffset() {
+        ClockOffsetEstimator clock = new ClockOffsetEstimator(1000, 200);
+        long offset = 5000000000L;
+        // Delay 2 ms with every tenth packet 10 ms late
+        for (int i = 0; i < 400; i++) {
+            long drone = i * 5000L;
+            long delay = i % 10 == 0 ? 12000 : 2000;
+            clock.add(drone, (offset + drone + delay) * 1000);
+        }
+        assertEquals(offset + 2000, clock.getOffset());
+        assertEquals(0, clock.getLatency());
+        assertTrue(clock.getMeanLatency() > 0 && clock.getMeanLatency() < 10000);
+        assertTrue(clock.getJitter() > 0);
+    }
+
+    @Test
+    public void minimumIsKeptWhenFull() {
+        // Room for 11 samples, fed 100 with a growing delay
+        ClockOffsetEstimator clock = new ClockOffsetEstimator(1000, 10);
+        for (int i = 0; i < 100; i++) {
+            long drone = i * 5000L;
+            clock.add(drone, (drone + 2000 + i) * 1000);
+        }
+        assertEquals(2000, clock.getOffset());
+        assertEquals(99, clock.getLatency());
+    }
+
+    @Test
+    public void droneTimeWraps() {
+        ClockOffsetEstimator clock = new ClockOffsetEstimator(1000, 200);
+        long start = ClockOffsetEstimator.DRONE_TIME_WRAP - 100000;
+        for (int i = 0; i < 100; i++) {
+            long t = start + i * 5000L;
+            clock.add(t % ClockOffsetEstimator.DRONE_TIME_WRAP, (t + 1000) * 1000);
+        }
+        assertEquals(1000, clock.getOffset());
+        assertEquals(0, clock.getLatency());
+        assertEquals(0, clock.getJitter(), 0.001);
+    }
+}
@@ -0,0 +1,78 @@
+package org.vaadin.drone.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class CommandSenderTests {
+
+    private final List<String> sent = new ArrayList<>();
+
+    private CommandSender createSender(long sendMillis) {
+        return new CommandSender((cmd, payload) -> {
+            synchronized (sent) {
+                sent.add(cmd + "," + payload);
+            }
+            if (sendMillis > 0 && cmd != ARDrone.AT.REF) {
+                try {
+                    Thread.sleep(sendMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+    }
+
+    @Test
+    public void urgentCommandBypassesSaturatedQueue() throws Exception {
+        CommandSender sender = createSender(2);
+        for (int i = 0; i < 200; i++) {
+            sender.submit(i % 2 == 0 ? ARDrone.AT.PCMD : ARDrone.AT.LED, "" + i, false, System.nanoTime());
+        }
+        sender.submit(ARDrone.AT.REF, "290717696", true, System.nanoTime());
+        int refIndex;
+        synchronized (sent) {
+            refIndex = sent.indexOf("REF,290717696");
+        }
+        assertTrue(refIndex >= 0 && refIndex < 10);
+        assertEquals(1, sender.getUrgentLatency().getCount());
+        assertTrue(sender.getUrgentLatency().getMaxMicros() < CommandSender.LATENCY_WARNING / 1000);
+
+        // Motion queued before the urgent command is discarded
+        while (sender.size() > 0) {
+            Thread.sleep(10);
+        }
+        Thread.sleep(CommandSender.REPEAT_INTERVAL * (CommandSender.REPEAT_COUNT + 2));
+        synchronized (sent) {
+            for (String s : sent.subList(refIndex, sent.size())) {
+                assertTrue(s, !s.startsWith("PCMD"));
+            }
+        }
+        assertTrue(sender.getDropped() >= 200 - CommandSender.CAPACITY);
+    }
+
+    @Test
+    public void onlySafetyCommandsAreUrgent() {
+        assertTrue(ARDrone.isUrgent(ARDrone.AT.REF, "290717696"));
+        assertTrue(ARDrone.isUrgent(ARDrone.AT.REF, "290717952"));
+        assertFalse(ARDrone.isUrgent(ARDrone.AT.REF, "290718208"));
+        assertFalse(ARDrone.isUrgent(ARDrone.AT.REF, "0"));
+        assertFalse(ARDrone.isUrgent(ARDrone.AT.PCMD, "1,0,0,0,0"));
+    }
+
+    @Test
+    public void urgentCommandIsRepeated() throws Exception {
+        CommandSender sender = createSender(0);
+        sender.submit(ARDrone.AT.REF, "290717952", true, System.nanoTime());
+        sender.submit(ARDrone.AT.PCMD, "1,0,0,0,0", false, System.nanoTime());
+        Thread.sleep(CommandSender.REPEAT_INTERVAL * (CommandSender.REPEAT_COUNT + 3));
+        synchronized (sent) {
+            assertEquals(1 + CommandSender.REPEAT_COUNT, sent.stream().filter(s -> s.startsWith("REF")).count());
+            assertEquals("REF,290717952", sent.get(0));
+            assertEquals("PCMD,1,0,0,0,0", sent.get(1));
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package org.vaadin.drone.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+
+public class ConfigQueueTests {
+
+    private static final int CONTROL_RECEIVED = 1 << 6;
+
+    private final List<String> sent = new ArrayList<>();
+    private final Map<String, String> cache = new HashMap<>();
+    private ConfigQueue queue;
+    /* Number of configs the simulated drone ignores */
+    private int lose;
+    private boolean navdataAlive = true;
+
+    private void createQueue() {
+        queue = new ConfigQueue((k, v) -> {
+            synchronized (sent) {
+                sent.add(k + "=" + v);
+            }
+            if (lose > 0) {
+                lose--;
+            } else if (navdataAlive) {
+                navdata(CONTROL_RECEIVED);
+            }
+        }, () -> navdata(0), new ConfigQueue.Cache() {
+            @Override
+            public String get(String key) {
+                return cache.get(key);
+            }
+
+            @Override
+            public void put(String key, String value) {
+                cache.put(key, value);
+            }
+
+            @Override
+            public void remove(String key) {
+                cache.remove(key);
+            }
+        });
+        if (navdataAlive) {
+            navdata(0);
+        }
+    }
+
+    private void navdata(int state) {
+        queue.onDroneStateChanged(NavDataPackets.demo(0, state, 100, 0, 0, 0, 0));
+    }
+
+    @Test
+    public void concurrentConfigsAreAllAcknowledged() throws Exception {
+        createQueue();
+        List<CompletableFuture<Boolean>> futures = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            futures.add(queue.submit("key:" + i, "" + i));
+        }
+        for (CompletableFuture<Boolean> f : futures) {
+            assertTrue(f.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(10, sent.size());
+        assertEquals("9", cache.get("key:9"));
+    }
+
+    @Test
+    public void unchangedValueIsNotSent() throws Exception {
+        createQueue();
+        cache.put("control:altitude_max", "2000");
+        assertFalse(queue.submit("control:altitude_max", "2000").get(5, TimeUnit.SECONDS));
+        assertTrue(sent.isEmpty());
+    }
+
+    @Test
+    public void forcedConfigIsSentEvenIfCached() throws Exception {
+        createQueue();
+        cache.put("control:altitude_max", "2000");
+        assertTrue(queue.submit("control:altitude_max", "2000", true).get(5, TimeUnit.SECONDS));
+        assertEquals(1, sent.size());
+    }
+
+    @Test
+    public void lostConfigIsRetried() throws Exception {
+        lose = 2;
+        createQueue();
+        assertTrue(queue.submit("general:navdata_demo", "TRUE").get(5, TimeUnit.SECONDS));
+        assertEquals(3, sent.size());
+    }
+
+    @Test
+    public void unacknowledgedConfigFails() throws Exception {
+        lose = 100;
+        createQueue();
+        cache.put("general:navdata_demo", "FALSE");
+        try {
+            queue.submit("general:navdata_demo", "TRUE").get(10, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof TimeoutException);
+        }
+        // The value is unknown, so the same request is sent again
+        assertNull(cache.get("general:navdata_demo"));
+        lose = 0;
+        navdata(0);
+        assertTrue(queue.submit("general:navdata_demo", "TRUE").get(5, TimeUnit.SECONDS));
+        assertEquals("TRUE", cache.get("general:navdata_demo"));
+    }
+
+    @Test
+    public void configWithoutNavdataIsNotConfirmed() throws Exception {
+        navdataAlive = false;
+        createQueue();
+        try {
+            queue.submit("control:altitude_max", "3000").get(5, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof TimeoutException);
+        }
+        assertEquals(1, sent.size());
+        assertNull(cache.get("control:altitude_max"));
+    }
+}
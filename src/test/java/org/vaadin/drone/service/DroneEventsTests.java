@@ -0,0 +1,56 @@
+package org.vaadin.drone.service;
+
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.eclipse.paho.client.mqttv3.MqttClient;
+import org.eclipse.paho.client.mqttv3.persist.MemoryPersistence;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class DroneEventsTests {
+
+    @Test
+    public void eventsAreRecorded() throws Exception {
+        Path file = Files.createTempFile("drone", ".jfr");
+        try (Recording recording = new Recording();
+                DatagramSocket stub = new DatagramSocket(0, InetAddress.getLoopbackAddress())) {
+            recording.enable("org.vaadin.drone.CommandSend");
+            recording.enable("org.vaadin.drone.MqttPublish");
+            recording.start();
+
+            ARDrone drone = new ARDrone("127.0.0.1", stub.getLocalPort(), stub.getLocalPort(), 1);
+            MqttPublisher publisher = new MqttPublisher(new MqttClient("tcp://localhost:1", "test", new MemoryPersistence()),
+                    new OfflineBuffer(10, null, 0), 100);
+            try {
+                publisher.publish("a/b", new byte[3]);
+            } finally {
+                drone.close();
+                publisher.close(1000);
+            }
+
+            recording.stop();
+            recording.dump(file);
+            List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+            List<String> commands = events.stream()
+                    .filter(e -> e.getEventType().getName().equals("org.vaadin.drone.CommandSend"))
+                    .map(e -> e.getString("command")).collect(Collectors.toList());
+            assertTrue(commands.toString(), commands.stream().anyMatch(c -> c.startsWith("AT*REF=")));
+            RecordedEvent publish = events.stream()
+                    .filter(e -> e.getEventType().getName().equals("org.vaadin.drone.MqttPublish"))
+                    .findFirst().get();
+            assertEquals("a/b", publish.getString("topic"));
+            assertEquals(3, publish.getInt("size"));
+            assertTrue(publish.getBoolean("buffered"));
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package org.vaadin.drone.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class KinematicsEngineTests {
+
+    private static final long MS = 1000000;
+
+    @Test
+    public void velocitiesAreParsed() {
+        NavData d = NavDataPackets.velocity(0, 0, 1, 2, 3);
+        assertEquals(1, d.getVx(), 0);
+        assertEquals(2, d.getVy(), 0);
+        assertEquals(3, d.getVz(), 0);
+        assertEquals(3, TelemetryField.VZ.read(d), 0);
+    }
+
+    @Test
+    public void positionFollowsHeading() {
+        KinematicsEngine k = new KinematicsEngine();
+        // 1 m/s forward heading zero for 1 s, then heading 90 degrees for 1 s
+        for (int t = 0; t <= 1000; t += 5) {
+            k.add(NavDataPackets.velocity(0, 1000 + t, 1000, 0, 0), t * MS);
+        }
+        for (int t = 1005; t <= 2000; t += 5) {
+            k.add(NavDataPackets.velocity(90000, 2000, 1000, 0, 0), t * MS);
+        }
+        assertEquals(1000, k.getX(), 5);
+        assertEquals(1000, k.getY(), 5);
+        assertEquals(2000, k.getDistance(), 5);
+        assertEquals(0, k.getVerticalSpeed(), 1);
+
+        // Gaps are not integrated over
+        k.add(NavDataPackets.velocity(0, 2000, 1000, 0, 0), 10000 * MS);
+        assertEquals(1000, k.getX(), 5);
+    }
+
+    @Test
+    public void verticalSpeedAndAcceleration() {
+        KinematicsEngine k = new KinematicsEngine();
+        for (int t = 0; t <= 1000; t += 5) {
+            k.add(NavDataPackets.velocity(0, t, t, 0, 0), t * MS);
+        }
+        assertEquals(1000, k.getVerticalSpeed(), 1);
+        assertEquals(1000, k.getAx(), 1);
+        assertEquals(0, k.getAy(), 0);
+    }
+
+    @Test
+    public void snapshotBelongsToSample() {
+        KinematicsEngine k = new KinematicsEngine();
+        k.add(NavDataPackets.velocity(0, 0, 1000, 0, 0), 0);
+        NavData d = NavDataPackets.velocity(0, 0, 1000, 0, 0);
+        k.add(d, 100 * MS);
+        k.add(NavDataPackets.velocity(0, 0, 1000, 0, 0), 200 * MS);
+        assertTrue(d.hasKinematics());
+        assertEquals(100, d.getX(), 0.001);
+        assertEquals(200, k.getX(), 0.001);
+    }
+}
@@ -0,0 +1,53 @@
+package org.vaadin.drone.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class LinkSupervisorTests {
+
+    @Test
+    public void timeoutFollowsPacketRate() {
+        LinkSupervisor link = new LinkSupervisor();
+        assertEquals(0, link.onPacket(1000));
+        for (int t = 1005; t < 2000; t += 5) {
+            assertEquals(-1, link.onPacket(t));
+        }
+        assertEquals(500, link.getTimeout());
+
+        link = new LinkSupervisor();
+        link.onPacket(0);
+        for (int t = 66; t < 5000; t += 66) {
+            link.onPacket(t);
+        }
+        assertEquals(500, link.getTimeout());
+
+        link = new LinkSupervisor();
+        link.onPacket(0);
+        // Slow and jittery: 300 and 500 ms gaps
+        for (int i = 1, t = 300; t < 20000; t += i++ % 2 == 0 ? 300 : 500) {
+            link.onPacket(t);
+        }
+        assertTrue(link.getTimeout() > 500 && link.getTimeout() < 3000);
+    }
+
+    @Test
+    public void outageIsMeasuredWithBackoff() {
+        LinkSupervisor link = new LinkSupervisor();
+        assertEquals(0, link.onPacket(0));
+        for (int t = 5; t <= 1000; t += 5) {
+            link.onPacket(t);
+        }
+        assertTrue(link.onTimeout(1100));
+        assertFalse(link.isUp());
+        assertEquals(50, link.getTimeout());
+        assertFalse(link.onTimeout(1150));
+        assertEquals(100, link.getTimeout());
+        assertFalse(link.onTimeout(1250));
+        assertEquals(200, link.getTimeout());
+
+        assertEquals(400, link.onPacket(1400));
+        assertTrue(link.isUp());
+    }
+}
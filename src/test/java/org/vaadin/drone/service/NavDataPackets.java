@@ -0,0 +1,91 @@
+package org.vaadin.drone.service;
+
+import java.net.DatagramPacket;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Builds navdata packets for tests.
+ */
+public class NavDataPackets {
+
+    public static NavData demo(long seq, int state, int battery, float theta, float phi, float psi, int altitude) {
+        return demo(seq, state, battery, theta, phi, psi, altitude, 0, 0, 0);
+    }
+
+    public static NavData demo(long seq, int state, int battery, float theta, float phi, float psi, int altitude,
+            float vx, float vy, float vz) {
+        return timed(seq, state, battery, theta, phi, psi, altitude, vx, vy, vz, -1);
+    }
+
+    /**
+     * Demo and time options.
+     *
+     * @param droneMicros Drone time in microseconds, sent as 11 bits of
+     * seconds and 21 bits of microseconds. Negative leaves out the time
+     * option.
+     */
+    public static NavData timed(long seq, int state, int battery, float theta, float phi, float psi, int altitude,
+            float vx, float vy, float vz, long droneMicros) {
+        byte[] b = demoBytes(seq, state, battery, theta, phi, psi, altitude, vx, vy, vz, droneMicros);
+        return NavData.create(new DatagramPacket(b, b.length));
+    }
+
+    public static byte[] demoBytes(long seq, int state, int battery, float theta, float phi, float psi, int altitude) {
+        return demoBytes(seq, state, battery, theta, phi, psi, altitude, 0, 0, 0, -1);
+    }
+
+    public static byte[] demoBytes(long seq, int state, int battery, float theta, float phi, float psi, int altitude,
+            float vx, float vy, float vz, long droneMicros) {
+        ByteBuffer b = ByteBuffer.allocate(256).order(ByteOrder.LITTLE_ENDIAN);
+        b.putInt(state).putInt((int) seq).putInt(0);
+        b.putShort((short) NavData.DEMO_TAG).putShort((short) 40);
+        b.putInt(3).putInt(battery).putFloat(theta).putFloat(phi).putFloat(psi).putInt(altitude);
+        b.putFloat(vx).putFloat(vy).putFloat(vz);
+        if (droneMicros >= 0) {
+            b.putShort((short) NavData.TIME_TAG).putShort((short) 8);
+            b.putInt((int) ((droneMicros / 1000000 % 2048) << 21 | droneMicros % 1000000));
+        }
+        b.putShort((short) 0xFFFF).putShort((short) 8).putInt(0);
+        return Arrays.copyOf(b.array(), b.position());
+    }
+
+    public static NavData altitude(long seq, int altitude) {
+        return demo(seq, 0, 100, 0, 0, 0, altitude);
+    }
+
+    public static NavData velocity(float psi, int altitude, float vx, float vy, float vz) {
+        return demo(0, 0, 100, 0, 0, psi, altitude, vx, vy, vz);
+    }
+
+    public static NavData time(long seq, long droneMicros) {
+        return timed(seq, 0, 100, 0, 0, 0, 0, 0, 0, 0, droneMicros);
+    }
+
+    /**
+     * Hovering drone at 200 Hz with sensor noise.
+     */
+    public static List<NavData> flight(int count, long seed) {
+        Random r = new Random(seed);
+        List<NavData> samples = new ArrayList<>();
+        float theta = 0;
+        float phi = 0;
+        float psi = 90000;
+        int altitude = 1000;
+        for (int i = 0; i < count; i++) {
+            theta += (float) r.nextGaussian() * 50;
+            phi += (float) r.nextGaussian() * 50;
+            psi += (float) r.nextGaussian() * 10;
+            altitude += r.nextInt(5) - 2;
+            int state = 0x0F000415 | (i % 1000 < 5 ? 1 << 6 : 0);
+            float vx = (float) r.nextGaussian() * 30;
+            samples.add(timed(100 + i, state, 80 - altitude / 1000, theta, phi, psi, altitude, vx, -vx, 0,
+                    2047000000L + i * 5000L + r.nextInt(200)));
+        }
+        return samples;
+    }
+}
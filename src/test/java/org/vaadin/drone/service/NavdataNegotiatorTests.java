@@ -0,0 +1,63 @@
+package org.vaadin.drone.service;
+
+import java.net.DatagramPacket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+public class NavdataNegotiatorTests {
+
+    private static final int DEMO = 1 << NavData.DEMO_TAG;
+    private static final int WIFI = 1 << NavData.WIFI_TAG;
+    private static final int TIME = 1 << NavData.TIME_TAG;
+
+    @Test
+    public void optionsFollowSubscribers() {
+        List<String> sent = new ArrayList<>();
+        NavdataNegotiator n = new NavdataNegotiator((demo, options) -> sent.add(demo + ":" + options), DEMO);
+        n.update();
+        n.subscribe("a", Arrays.asList("altitude", "battery"));
+        n.subscribe("b", Arrays.asList("linkQuality", "unknown"));
+        n.subscribe("b", Arrays.asList("battery", "linkQuality"));
+        n.subscribe("c", Collections.singletonList(NavdataNegotiator.ALL_FIELDS));
+        n.unsubscribe("c");
+        n.unsubscribe("b");
+        n.unsubscribe("b");
+        assertEquals(Arrays.asList(
+                "true:" + DEMO,
+                "true:" + (DEMO | WIFI),
+                "false:" + (DEMO | WIFI),
+                "true:" + (DEMO | WIFI),
+                "true:" + DEMO), sent);
+    }
+
+    @Test
+    public void maskShrinksWhenSubscriberLeaves() {
+        List<Integer> sent = new ArrayList<>();
+        // Bridge consumers aggregating demo fields only
+        int base = DEMO | TIME | TelemetryField.getOptions(TelemetryField.parse("altitude,battery"));
+        NavdataNegotiator n = new NavdataNegotiator((demo, options) -> sent.add(options), base);
+        n.update();
+        n.subscribe("dash", Arrays.asList("battery", "linkQuality"));
+        n.unsubscribe("dash");
+        assertEquals(Arrays.asList(DEMO | TIME, DEMO | TIME | WIFI, DEMO | TIME), sent);
+    }
+
+    @Test
+    public void fieldOptions() {
+        assertEquals(DEMO, TelemetryField.getOptions(TelemetryField.ALTITUDE, TelemetryField.BATTERY));
+        assertEquals(DEMO | WIFI, TelemetryField.getOptions(TelemetryField.values()));
+        assertEquals(TelemetryField.values().length, TelemetryField.parse("").length);
+    }
+
+    @Test
+    public void skippedOptionsAreNotParsed() {
+        byte[] b = NavDataPackets.demoBytes(1, 0, 80, 0, 0, 0, 1500);
+        DatagramPacket p = new DatagramPacket(b, b.length);
+        assertEquals(80, NavData.create(p, DEMO).getBattery());
+        assertEquals(0, NavData.create(p, WIFI).getBattery());
+    }
+}
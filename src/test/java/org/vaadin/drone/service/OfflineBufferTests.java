@@ -0,0 +1,69 @@
+package org.vaadin.drone.service;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class OfflineBufferTests {
+
+    @Test
+    public void spillsInOrderAndDropsWhenFull() throws Exception {
+        Path file = Files.createTempFile("spill", ".dat");
+        try (OfflineBuffer buffer = new OfflineBuffer(3, file, 200)) {
+            int accepted = 0;
+            for (int i = 0; i < 20; i++) {
+                if (buffer.offer("t/" + i, ("" + i).getBytes(), i % 2 == 0)) {
+                    accepted++;
+                }
+            }
+            assertTrue(buffer.getSpilled() > 0);
+            assertEquals(20 - accepted, buffer.getDropped());
+            for (int i = 0; i < accepted; i++) {
+                OfflineBuffer.Message m = buffer.poll();
+                assertEquals("t/" + i, m.getTopic());
+                assertEquals("" + i, new String(m.getPayload()));
+                assertEquals(i % 2 == 0, m.isRetained());
+            }
+            assertNull(buffer.poll());
+
+            // Drained spill file is reused from the start
+            for (int i = 0; i < accepted; i++) {
+                assertTrue(buffer.offer("t/" + i, ("" + i).getBytes(), false));
+            }
+            assertEquals(accepted, buffer.size());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void requeuedMessageStaysFirst() throws Exception {
+        Path file = Files.createTempFile("spill", ".dat");
+        try (OfflineBuffer buffer = new OfflineBuffer(2, file, 200)) {
+            for (int i = 0; i < 4; i++) {
+                buffer.offer("t/" + i, new byte[1], false);
+            }
+            buffer.requeue(buffer.poll());
+            for (int i = 0; i < 4; i++) {
+                assertEquals("t/" + i, buffer.poll().getTopic());
+            }
+            assertNull(buffer.poll());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void dropsWithoutSpillFile() throws Exception {
+        try (OfflineBuffer buffer = new OfflineBuffer(2, null, 0)) {
+            assertTrue(buffer.offer("a", new byte[1], false));
+            assertTrue(buffer.offer("b", new byte[1], false));
+            assertFalse(buffer.offer("c", new byte[1], false));
+            assertEquals(1, buffer.getDropped());
+        }
+    }
+}
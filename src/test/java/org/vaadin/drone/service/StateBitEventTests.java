@@ -0,0 +1,60 @@
+package org.vaadin.drone.service;
+
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.List;
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+public class StateBitEventTests {
+
+    private static final int FLYING = 1 << 0;
+    private static final int BATTERY_LOW = 1 << 15;
+    private static final int EMERGENCY = 1 << 31;
+
+    @Test
+    public void changedBitsAreReportedOnce() throws Exception {
+        List<String> events = new ArrayList<>();
+        try (DatagramSocket stub = new DatagramSocket(0, InetAddress.getLoopbackAddress())) {
+            stub.setSoTimeout(5000);
+            ARDrone drone = new ARDrone("127.0.0.1", stub.getLocalPort(), stub.getLocalPort(), 1);
+            try {
+                drone.addStateBitListener((bit, value, initial, sequence, time) -> {
+                    synchronized (events) {
+                        events.add(NavData.getStateBitName(bit) + "=" + value + (initial ? "*" : "") + "@" + sequence);
+                        events.notifyAll();
+                    }
+                });
+                drone.startNavData();
+
+                // Wait for the navdata init packet to learn the client address
+                DatagramPacket init = new DatagramPacket(new byte[1024], 1024);
+                do {
+                    stub.receive(init);
+                } while (init.getLength() != 4);
+
+                int[] states = {FLYING, FLYING, FLYING | BATTERY_LOW, FLYING | BATTERY_LOW, BATTERY_LOW | EMERGENCY};
+                for (int i = 0; i < states.length; i++) {
+                    byte[] b = NavDataPackets.demoBytes(i + 1, states[i], 100, 0, 0, 0, 0);
+                    stub.send(new DatagramPacket(b, b.length, init.getSocketAddress()));
+                }
+                synchronized (events) {
+                    long end = System.currentTimeMillis() + 5000;
+                    while (events.size() < 35 && System.currentTimeMillis() < end) {
+                        events.wait(100);
+                    }
+                }
+            } finally {
+                drone.close();
+            }
+        }
+        assertEquals(32 + 3, events.size());
+        assertEquals("FLYING=true*@1", events.get(0));
+        assertEquals("VIDEO=false*@1", events.get(1));
+        assertEquals("BATTERY_LOW=true@3", events.get(32));
+        assertEquals("FLYING=false@5", events.get(33));
+        assertEquals("EMERGENCY=true@5", events.get(34));
+    }
+}
@@ -0,0 +1,110 @@
+package org.vaadin.drone.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+public class TelemetryAggregatorTests {
+
+    private static final long MS = 1000000;
+
+    private final List<TelemetryAggregator.Summary> summaries = new ArrayList<>();
+
+    @Test
+    public void tumblingWindow() {
+        TelemetryAggregator a = new TelemetryAggregator(1000, 1000, summaries::add, TelemetryField.ALTITUDE);
+        a.add(NavDataPackets.altitude(1, 100), 10000 * MS, 10000);
+        a.add(NavDataPackets.altitude(2, 300), 10500 * MS, 10500);
+        a.add(NavDataPackets.altitude(3, 200), 10999 * MS, 10999);
+        assertEquals(0, summaries.size());
+
+        a.add(NavDataPackets.altitude(4, 50), 11000 * MS, 11000);
+        assertEquals(1, summaries.size());
+        TelemetryAggregator.Summary s = summaries.get(0);
+        assertEquals(10000, s.getStart());
+        assertEquals(11000, s.getEnd());
+        assertEquals(3, s.getCount());
+        assertEquals(100, s.getMin(0), 0);
+        assertEquals(300, s.getMax(0), 0);
+        assertEquals(200, s.getMean(0), 0);
+        assertEquals(200, s.getLast(0), 0);
+    }
+
+    @Test
+    public void slidingWindow() {
+        TelemetryAggregator a = new TelemetryAggregator(1000, 500, summaries::add, TelemetryField.ALTITUDE);
+        a.add(NavDataPackets.altitude(1, 100), 10000 * MS, 10000);
+        a.add(NavDataPackets.altitude(2, 300), 10600 * MS, 10600);
+        a.add(NavDataPackets.altitude(3, 500), 11100 * MS, 11100);
+        assertEquals(2, summaries.size());
+
+        // Second window covers both first panes
+        TelemetryAggregator.Summary s = summaries.get(1);
+        assertEquals(10000, s.getStart());
+        assertEquals(11000, s.getEnd());
+        assertEquals(2, s.getCount());
+        assertEquals(200, s.getMean(0), 0);
+        assertEquals(300, s.getLast(0), 0);
+
+        a.add(NavDataPackets.altitude(4, 0), 11500 * MS, 11500);
+        s = summaries.get(2);
+        assertEquals(10500, s.getStart());
+        assertEquals(2, s.getCount());
+        assertEquals(300, s.getMin(0), 0);
+        assertEquals(500, s.getMax(0), 0);
+    }
+
+    @Test
+    public void gapResetsWindow() {
+        TelemetryAggregator a = new TelemetryAggregator(1000, 1000, summaries::add, TelemetryField.ALTITUDE);
+        a.add(NavDataPackets.altitude(1, 100), 10000 * MS, 10000);
+        a.add(NavDataPackets.altitude(2, 300), 60000 * MS, 60000);
+        assertEquals(2, summaries.size());
+        assertEquals(1, summaries.get(0).getCount());
+        // The gap is reported once
+        assertEquals(0, summaries.get(1).getCount());
+        assertEquals(11000, summaries.get(1).getStart());
+        assertEquals(60000, summaries.get(1).getEnd());
+        a.add(NavDataPackets.altitude(3, 300), 61000 * MS, 61000);
+        assertEquals(60000, summaries.get(2).getStart());
+    }
+
+    @Test
+    public void linkDownClosesWindows() {
+        TelemetryAggregator a = new TelemetryAggregator(1000, 500, summaries::add, TelemetryField.ALTITUDE);
+        a.add(NavDataPackets.altitude(1, 100), 10000 * MS, 10000);
+        a.add(NavDataPackets.altitude(2, 300), 10600 * MS, 10600);
+        assertEquals(1, summaries.size());
+
+        // Both windows containing the last pane are emitted
+        a.onLinkDown(10600);
+        assertEquals(3, summaries.size());
+        assertEquals(11000, summaries.get(1).getEnd());
+        assertEquals(2, summaries.get(1).getCount());
+        assertEquals(11500, summaries.get(2).getEnd());
+        assertEquals(1, summaries.get(2).getCount());
+        assertEquals(300, summaries.get(2).getLast(0), 0);
+
+        a.add(NavDataPackets.altitude(3, 200), 20100 * MS, 20100);
+        assertEquals(4, summaries.size());
+        assertEquals(0, summaries.get(3).getCount());
+        assertEquals(11500, summaries.get(3).getStart());
+        assertEquals(20000, summaries.get(3).getEnd());
+    }
+
+    @Test
+    public void wallClockStepDoesNotMoveWindows() {
+        TelemetryAggregator a = new TelemetryAggregator(1000, 1000, summaries::add, TelemetryField.ALTITUDE);
+        // Monotonic clock from an arbitrary origin, wall clock stepped back an hour
+        a.add(NavDataPackets.altitude(1, 100), -5000 * MS, 10000);
+        a.add(NavDataPackets.altitude(2, 300), -4500 * MS, 10500 - 3600000);
+        assertEquals(0, summaries.size());
+
+        a.add(NavDataPackets.altitude(3, 200), -4000 * MS, 11000 - 3600000);
+        assertEquals(1, summaries.size());
+        assertEquals(10000, summaries.get(0).getStart());
+        assertEquals(11000, summaries.get(0).getEnd());
+        assertEquals(2, summaries.get(0).getCount());
+    }
+}
@@ -0,0 +1,66 @@
+package org.vaadin.drone.service;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+public class TelemetryRingStoreTests {
+
+    private static final long MS = 1000000;
+
+    @Test
+    public void rangeQueryAfterWrapAround() {
+        // 1s retention at 10 Hz => capacity of 10 samples
+        TelemetryRingStore store = new TelemetryRingStore(1000, 10, TelemetryField.ALTITUDE, TelemetryField.BATTERY);
+        assertEquals(10, store.getCapacity());
+        for (int i = 0; i < 25; i++) {
+            store.add(NavDataPackets.altitude(i, i * 10), 1000 + i * 100, (1000 + i * 100) * MS);
+        }
+        assertEquals(10, store.size());
+
+        TelemetryRingStore.Result r = store.query(0, Long.MAX_VALUE, 0, 3400, 3400 * MS, TelemetryField.ALTITUDE);
+        assertEquals(10, r.size());
+        assertEquals(15, r.getSequence()[0]);
+        assertEquals(240, r.getValues(0)[9], 0);
+
+        r = store.query(2800, 3000, 0, 3400, 3400 * MS, TelemetryField.ALTITUDE);
+        assertArrayEquals(new long[]{2800, 2900, 3000}, r.getTime());
+    }
+
+    @Test
+    public void retentionCutsOffOldSamples() {
+        TelemetryRingStore store = new TelemetryRingStore(1000, 100, TelemetryField.ALTITUDE);
+        for (int i = 0; i < 20; i++) {
+            store.add(NavDataPackets.altitude(i, i), i * 100, i * 100 * MS);
+        }
+        TelemetryRingStore.Result r = store.query(0, Long.MAX_VALUE, 0, 1900, 1900 * MS, TelemetryField.ALTITUDE);
+        assertEquals(900, r.getTime()[0]);
+    }
+
+    @Test
+    public void downsampledQuery() {
+        TelemetryRingStore store = new TelemetryRingStore(10000, 100, TelemetryField.ALTITUDE);
+        for (int i = 0; i < 10; i++) {
+            store.add(NavDataPackets.altitude(i, i * 10), 1000 + i * 100, (1000 + i * 100) * MS);
+        }
+        TelemetryRingStore.Result r = store.query(1000, 1999, 500, 2000, 2000 * MS, TelemetryField.ALTITUDE);
+        assertArrayEquals(new long[]{1000, 1500}, r.getTime());
+        assertArrayEquals(new float[]{20, 70}, r.getValues(0), 0);
+        assertEquals(9, r.getSequence()[1]);
+    }
+
+    @Test
+    public void wallClockStepDoesNotBreakQueries() {
+        TelemetryRingStore store = new TelemetryRingStore(10000, 10, TelemetryField.ALTITUDE);
+        for (int i = 0; i < 20; i++) {
+            // Wall clock is stepped back by a minute after ten samples
+            long wall = 100000 + i * 100 - (i >= 10 ? 60000 : 0);
+            store.add(NavDataPackets.altitude(i, i), wall, (5000 + i * 100) * MS);
+        }
+        // Last second, in the current wall clock
+        TelemetryRingStore.Result r = store.query(41000, Long.MAX_VALUE, 0, 41900, 6900 * MS, TelemetryField.ALTITUDE);
+        assertEquals(10, r.size());
+        assertEquals(10, r.getSequence()[0]);
+        assertEquals(19, r.getSequence()[9]);
+    }
+}
@@ -0,0 +1,74 @@
+package org.vaadin.drone.service;
+
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.AutowireCapableBeanFactory;
+import org.springframework.boot.test.SpringApplicationConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.vaadin.drone.Application;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@SpringApplicationConfiguration(classes = Application.class)
+public class TelemetryWriterTests {
+
+    private static final int FLYING = 1;
+    private static final int RATE = 200;
+    private static final long INTERVAL_NANOS = 1000000000L / RATE;
+    private static final long FLUSH_INTERVAL = 100;
+
+    @Autowired
+    private AutowireCapableBeanFactory beans;
+
+    @Autowired
+    private FlightRepository flights;
+
+    @Autowired
+    private TelemetrySampleRepository samples;
+
+    @Test
+    public void keepsUpWithNavdataRate() throws Exception {
+        // Own writer instance, not the one used by the bridge
+        TelemetryWriter writer = new TelemetryWriter();
+        beans.autowireBean(writer);
+
+        // Three seconds of navdata at 200 Hz, with room for one second of backlog
+        int count = RATE * 3;
+        writer.start(RATE, FLUSH_INTERVAL, RATE);
+        long maxBacklog = 0;
+        try {
+            NavData landed = NavDataPackets.demo(0, 0, 100, 0, 0, 0, 0);
+            writer.add(landed, 0);
+            long next = System.nanoTime();
+            for (int i = 1; i <= count; i++) {
+                LockSupport.parkNanos(next - System.nanoTime());
+                next += INTERVAL_NANOS;
+                writer.add(NavDataPackets.demo(i, FLYING, 100, 1, 2, 3, 1000), i * 5L);
+                maxBacklog = Math.max(maxBacklog, i - writer.getWritten());
+            }
+            writer.add(landed, count * 5L + 5);
+        } finally {
+            writer.stop();
+        }
+        long maxLag = maxBacklog * 1000 / RATE;
+        Logger.getLogger(TelemetryWriterTests.class.getName()).log(Level.INFO,
+                String.format("Stored %d samples, max backlog %d samples (%d ms)", writer.getWritten(), maxBacklog, maxLag));
+
+        assertEquals(0, writer.getDropped());
+        assertEquals(count, writer.getWritten());
+        assertTrue("Flush lag " + maxLag + " ms", maxLag <= 5 * FLUSH_INTERVAL);
+
+        List<Flight> all = flights.findAll();
+        assertEquals(1, all.size());
+        Flight flight = all.get(0);
+        assertEquals(5, flight.getStartTime());
+        assertEquals(count, samples.countByFlightId(flight.getId()));
+        assertEquals(200, samples.findByFlightIdAndSampleTimeBetweenOrderBySampleTimeAsc(flight.getId(), 1000, 1995).size());
+    }
+}
@@ -0,0 +1,139 @@
+package org.vaadin.drone.service.shm;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.eclipse.paho.client.mqttv3.MqttClient;
+import org.eclipse.paho.client.mqttv3.MqttException;
+import org.eclipse.paho.client.mqttv3.persist.MemoryPersistence;
+import org.vaadin.drone.service.MQTTBridge;
+import org.vaadin.drone.service.MqttPublisher;
+import org.vaadin.drone.service.NavData;
+import org.vaadin.drone.service.NavDataPackets;
+import org.vaadin.drone.service.OfflineBuffer;
+import org.vaadin.drone.service.sink.SinkDispatcher;
+
+/**
+ * Compares the latency from writing a sample to a reader seeing it, through
+ * the shared memory slot and through the bridge's MQTT publish path: sink
+ * queue, JSON, MqttPublisher, broker and JSON parsing in the subscriber.
+ *
+ * Run with the broker URL as argument, default tcp://localhost:1883. The MQTT
+ * part is skipped if the broker is not reachable.
+ */
+public class SharedStateBenchmark {
+
+    private static final int SAMPLES = 2000;
+    private static final long INTERVAL_NANOS = 5000000;
+
+    public static void main(String[] args) throws Exception {
+        String broker = args.length > 0 ? args[0] : "tcp://localhost:1883";
+        NavData[] samples = new NavData[SAMPLES];
+        for (int i = 0; i < SAMPLES; i++) {
+            samples[i] = NavDataPackets.demo(i + 1, i + 1, 50, i, -i, 2 * i, 3 * i, 1, 2, 3);
+        }
+        report("shared memory", sharedMemory(samples));
+        try {
+            report("mqtt " + broker, mqtt(broker, samples));
+        } catch (MqttException e) {
+            System.out.println("mqtt skipped: " + e.getMessage());
+        }
+    }
+
+    private static long[] sharedMemory(NavData[] samples) throws Exception {
+        Path file = Files.createTempFile("navdata", ".shm");
+        long[] latency = new long[samples.length];
+        try (SharedStateWriter writer = new SharedStateWriter(file);
+                SharedStateReader reader = new SharedStateReader(file)) {
+            Thread t = new Thread(() -> {
+                SharedState s = new SharedState();
+                int n = 0;
+                while (n < samples.length) {
+                    if (reader.readIfChanged(s)) {
+                        latency[(int) s.getSequenceNumber() - 1] = System.nanoTime() - s.getWriteNanos();
+                        n = (int) s.getSequenceNumber();
+                    }
+                }
+            });
+            t.start();
+            pace(samples, writer::write);
+            t.join();
+        } finally {
+            Files.delete(file);
+        }
+        return latency;
+    }
+
+    private static long[] mqtt(String broker, NavData[] samples) throws Exception {
+        long[] sent = new long[samples.length];
+        long[] latency = new long[samples.length];
+        CountDownLatch done = new CountDownLatch(1);
+        MqttClient sub = new MqttClient(broker, "shm-bench-sub", new MemoryPersistence());
+        MqttClient pub = new MqttClient(broker, "shm-bench-pub", new MemoryPersistence());
+        sub.connect();
+        pub.connect();
+        MqttPublisher publisher = new MqttPublisher(pub, new OfflineBuffer(SAMPLES, null, 0), SAMPLES);
+        SinkDispatcher sinks = new SinkDispatcher();
+        try {
+            sub.subscribe("bench/navdata", (topic, m) -> {
+                JsonObject json = new JsonParser().parse(new String(m.getPayload())).getAsJsonObject();
+                int seq = json.get("sequenceNumber").getAsInt();
+                latency[seq - 1] = System.nanoTime() - sent[seq - 1];
+                if (seq == samples.length) {
+                    done.countDown();
+                }
+            });
+            // As MQTTBridge publishes in JSON mode
+            sinks.add("mqtt", d -> {
+                try {
+                    publisher.publish("bench/navdata", MQTTBridge.toJson(d).toString().getBytes());
+                } catch (MqttException e) {
+                    throw new IOException(e);
+                }
+            }, SAMPLES, () -> 0);
+            pace(samples, d -> {
+                sent[(int) d.getSequenceNumber() - 1] = System.nanoTime();
+                sinks.offer(d, System.currentTimeMillis());
+            });
+            done.await(10, TimeUnit.SECONDS);
+        } finally {
+            sinks.close();
+            publisher.close(1000);
+            pub.disconnect();
+            sub.disconnect();
+        }
+        return latency;
+    }
+
+    private interface Writer {
+
+        void write(NavData d);
+    }
+
+    /* Write at the navdata rate of 200 Hz */
+    private static void pace(NavData[] samples, Writer w) {
+        long next = System.nanoTime();
+        for (NavData d : samples) {
+            while (System.nanoTime() < next) {
+                Thread.yield();
+            }
+            w.write(d);
+            next += INTERVAL_NANOS;
+        }
+    }
+
+    private static void report(String name, long[] latency) {
+        long[] l = Arrays.stream(latency).filter(v -> v > 0).sorted().toArray();
+        if (l.length == 0) {
+            System.out.println(name + ": no samples received");
+            return;
+        }
+        System.out.printf("%s: %d samples, median %.1f us, p99 %.1f us, max %.1f us%n", name, l.length,
+                l[l.length / 2] / 1000.0, l[l.length * 99 / 100] / 1000.0, l[l.length - 1] / 1000.0);
+    }
+}
@@ -0,0 +1,137 @@
+package org.vaadin.drone.service.shm;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+import org.vaadin.drone.service.NavData;
+import org.vaadin.drone.service.NavDataPackets;
+
+public class SharedStateTests {
+
+    /* Every value is derived from i, so a torn read is detectable */
+    private static NavData sample(int i) {
+        return NavDataPackets.demo(i, i, i % 101, i, -i, 2 * i, 3 * i, i + 1, i + 2, i + 3);
+    }
+
+    @Test
+    public void readerSeesLatestSample() throws IOException {
+        Path file = Files.createTempFile("navdata", ".shm");
+        try (SharedStateWriter writer = new SharedStateWriter(file);
+                SharedStateReader reader = new SharedStateReader(file)) {
+            SharedState s = new SharedState();
+            assertFalse(reader.read(s));
+            writer.write(sample(7));
+            assertTrue(reader.readIfChanged(s));
+            assertEquals(7, s.getSequenceNumber());
+            assertEquals(21, s.getAltitude());
+            assertEquals(14, s.getPsi(), 0);
+            assertEquals(10, s.getVz(), 0);
+            assertFalse(reader.readIfChanged(s));
+            writer.write(sample(8));
+            assertTrue(reader.readIfChanged(s));
+            assertEquals(8, s.getSequenceNumber());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void crashedWriterIsRecovered() throws IOException {
+        Path file = Files.createTempFile("navdata", ".shm");
+        try {
+            try (SharedStateWriter writer = new SharedStateWriter(file)) {
+                writer.write(sample(7));
+            }
+            // Counter left odd as by a writer that died while writing
+            try (FileChannel c = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                c.map(FileChannel.MapMode.READ_WRITE, 0, SharedStateLayout.SIZE).order(ByteOrder.LITTLE_ENDIAN)
+                        .putLong(SharedStateLayout.SEQLOCK_OFFSET, 3);
+            }
+            try (SharedStateWriter writer = new SharedStateWriter(file);
+                    SharedStateReader reader = new SharedStateReader(file)) {
+                SharedState s = new SharedState();
+                assertFalse(reader.read(s));
+                writer.write(sample(8));
+                assertTrue(reader.read(s));
+                assertEquals(8, s.getSequenceNumber());
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void deadWriterDoesNotBlockReader() throws IOException {
+        Path file = Files.createTempFile("navdata", ".shm");
+        try {
+            try (SharedStateWriter writer = new SharedStateWriter(file)) {
+                writer.write(sample(7));
+            }
+            try (FileChannel c = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                c.map(FileChannel.MapMode.READ_WRITE, 0, SharedStateLayout.SIZE).order(ByteOrder.LITTLE_ENDIAN)
+                        .putLong(SharedStateLayout.SEQLOCK_OFFSET, 3);
+            }
+            try (SharedStateReader reader = new SharedStateReader(file)) {
+                SharedState s = new SharedState();
+                assertFalse(reader.read(s));
+                assertFalse(reader.readIfChanged(s));
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void concurrentReadsAreNeverTorn() throws Exception {
+        Path file = Files.createTempFile("navdata", ".shm");
+        NavData[] samples = new NavData[1000];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = sample(i + 1);
+        }
+        AtomicBoolean running = new AtomicBoolean(true);
+        try (SharedStateWriter writer = new SharedStateWriter(file);
+                SharedStateReader reader = new SharedStateReader(file)) {
+            Thread t = new Thread(() -> {
+                for (int n = 0; running.get(); n++) {
+                    writer.write(samples[n % samples.length]);
+                    // Bursts with short gaps, so reads both collide and succeed
+                    if (n % 16 == 0) {
+                        LockSupport.parkNanos(10000);
+                    }
+                }
+            });
+            t.start();
+            int reads = 0;
+            try {
+                SharedState s = new SharedState();
+                long end = System.currentTimeMillis() + 500;
+                while (System.currentTimeMillis() < end) {
+                    if (reader.readIfChanged(s)) {
+                        long i = s.getSequenceNumber();
+                        assertEquals(i, s.getStateBits());
+                        assertEquals(3 * i, s.getAltitude());
+                        assertEquals(i % 101, s.getBattery());
+                        assertEquals(-i, s.getPhi(), 0);
+                        assertEquals(i + 3, s.getVz(), 0);
+                        reads++;
+                    }
+                }
+            } finally {
+                running.set(false);
+                t.join();
+            }
+            assertTrue(reads > 100);
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
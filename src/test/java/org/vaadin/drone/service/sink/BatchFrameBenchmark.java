@@ -0,0 +1,92 @@
+package org.vaadin.drone.service.sink;
+
+import com.google.gson.JsonObject;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+import org.vaadin.drone.service.NavData;
+import org.vaadin.drone.service.NavDataPackets;
+import org.vaadin.drone.service.TelemetryField;
+
+/**
+ * Compares the size of a minute of 200 Hz navdata as JSON messages, as
+ * {@link TelemetryRecord}s, gzipped records and {@link BatchFrame}s of
+ * different sizes, and the encoding and decoding speed of the frames.
+ */
+public class BatchFrameBenchmark {
+
+    private static final int SAMPLES = 200 * 60;
+    private static final int ROUNDS = 20;
+
+    public static void main(String[] args) throws IOException {
+        List<NavData> samples = NavDataPackets.flight(SAMPLES, 42);
+
+        long json = 0;
+        for (int i = 0; i < SAMPLES; i++) {
+            json += toJson(samples.get(i), time(i)).toString().getBytes().length;
+        }
+        ByteBuffer records = ByteBuffer.allocate(SAMPLES * TelemetryRecord.SIZE);
+        for (NavData d : samples) {
+            TelemetryRecord.encode(d, records);
+        }
+        ByteArrayOutputStream gzipped = new ByteArrayOutputStream();
+        try (GZIPOutputStream gz = new GZIPOutputStream(gzipped)) {
+            gz.write(records.array(), 0, records.position());
+        }
+        report("JSON per sample", json, json);
+        report("TelemetryRecord", records.position(), json);
+        report("TelemetryRecord gzip", gzipped.size(), json);
+
+        for (int batch : new int[]{10, 50, 200, 1000}) {
+            BatchFrameEncoder encoder = new BatchFrameEncoder(batch);
+            long bytes = 0;
+            long encodeNanos = 0;
+            long decodeNanos = 0;
+            for (int round = 0; round < ROUNDS; round++) {
+                bytes = 0;
+                for (int i = 0; i < SAMPLES; i += batch) {
+                    long start = System.nanoTime();
+                    for (int j = i; j < Math.min(SAMPLES, i + batch); j++) {
+                        encoder.add(samples.get(j), time(j));
+                    }
+                    byte[] frame = encoder.encode();
+                    long encoded = System.nanoTime();
+                    BatchFrame.decode(frame);
+                    long decoded = System.nanoTime();
+                    bytes += frame.length;
+                    // First rounds are warmup
+                    if (round >= ROUNDS / 2) {
+                        encodeNanos += encoded - start;
+                        decodeNanos += decoded - encoded;
+                    }
+                }
+            }
+            report("BatchFrame of " + batch, bytes, json);
+            long measured = (long) SAMPLES * (ROUNDS - ROUNDS / 2);
+            System.out.printf("%26s encode %.0f ns, decode %.0f ns per sample%n", "",
+                    (double) encodeNanos / measured, (double) decodeNanos / measured);
+        }
+    }
+
+    private static long time(int i) {
+        return 1500000000000L + i * 5 + (i % 7 == 0 ? 1 : 0);
+    }
+
+    private static JsonObject toJson(NavData d, long time) {
+        JsonObject json = new JsonObject();
+        json.addProperty("seq", d.getSequenceNumber());
+        json.addProperty("time", time);
+        json.addProperty("state", d.getStateBits());
+        for (TelemetryField f : TelemetryField.values()) {
+            json.addProperty(f.getKey(), f.read(d));
+        }
+        return json;
+    }
+
+    private static void report(String name, long bytes, long json) {
+        System.out.printf("%-26s %8d bytes %6.1f bytes/sample %6.1fx%n", name, bytes,
+                (double) bytes / SAMPLES, (double) json / bytes);
+    }
+}
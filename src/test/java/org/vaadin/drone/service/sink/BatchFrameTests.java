@@ -0,0 +1,126 @@
+package org.vaadin.drone.service.sink;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+import org.vaadin.drone.service.NavData;
+import org.vaadin.drone.service.NavDataPackets;
+import org.vaadin.drone.service.TelemetryField;
+
+public class BatchFrameTests {
+
+    @Test
+    public void frameRoundTrip() {
+        List<NavData> samples = NavDataPackets.flight(500, 1);
+        // Irregular samples for the wider buckets
+        samples.set(100, NavDataPackets.timed(1L << 31, -1, 80 - Integer.MAX_VALUE / 1000, Float.NaN, Float.MAX_VALUE, -0f,
+                Integer.MAX_VALUE, Float.MIN_VALUE, -Float.MIN_VALUE, 0, 0));
+        samples.set(101, NavDataPackets.timed(7, 0, 80, 1, -1, 0, -5, 0, 0, 0, 12345));
+        BatchFrameEncoder encoder = new BatchFrameEncoder(samples.size());
+        long[] times = new long[samples.size()];
+        Random r = new Random(2);
+        for (int i = 0; i < samples.size(); i++) {
+            times[i] = 1500000000000L + i * 5 + r.nextInt(3) - (i == 300 ? 100000 : 0);
+            encoder.add(samples.get(i), times[i]);
+        }
+        byte[] bytes = encoder.encode();
+        assertEquals(0, encoder.size());
+
+        BatchFrame frame = BatchFrame.decode(bytes);
+        assertEquals(samples.size(), frame.getSize());
+        for (int i = 0; i < samples.size(); i++) {
+            NavData d = samples.get(i);
+            assertEquals(d.getSequenceNumber(), frame.getSequenceNumber(i));
+            assertEquals(d.getStateBits(), frame.getStateBits(i));
+            assertEquals(d.getDroneTime(), frame.getDroneTime(i));
+            assertEquals(times[i], frame.getReceiveTime(i));
+            for (TelemetryField f : TelemetryField.values()) {
+                assertEquals(Float.floatToIntBits((float) f.read(d)), Float.floatToIntBits(frame.getValue(f, i)));
+            }
+        }
+        assertTrue(bytes.length + " bytes", bytes.length < samples.size() * TelemetryRecord.SIZE / 2);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void truncatedFrameIsRejected() {
+        BatchFrameEncoder encoder = new BatchFrameEncoder(10);
+        for (NavData d : NavDataPackets.flight(10, 3)) {
+            encoder.add(d, 0);
+        }
+        byte[] bytes = encoder.encode();
+        byte[] truncated = new byte[bytes.length / 2];
+        System.arraycopy(bytes, 0, truncated, 0, truncated.length);
+        BatchFrame.decode(truncated);
+    }
+
+    @Test
+    public void sinkPublishesBySizeAndAge() throws Exception {
+        List<BatchFrame> frames = new ArrayList<>();
+        BatchFrameSink sink = new BatchFrameSink(f -> frames.add(BatchFrame.decode(f)), 4, 100);
+        List<NavData> samples = NavDataPackets.flight(11, 4);
+        long time = 0;
+        for (int i = 0; i < samples.size(); i++) {
+            // A gap before the seventh sample ends the second frame early
+            time += i == 6 ? 200 : 5;
+            sink.add(samples.get(i), time);
+        }
+        assertEquals(3, frames.size());
+        assertEquals(4, frames.get(0).getSize());
+        assertEquals(2, frames.get(1).getSize());
+        assertEquals(4, frames.get(2).getSize());
+        // The rest is published on close
+        sink.close();
+        assertEquals(4, frames.size());
+        assertEquals(1, frames.get(3).getSize());
+        assertEquals(samples.get(10).getSequenceNumber(), frames.get(3).getSequenceNumber(0));
+    }
+
+    @Test
+    public void idleSinkPublishesAfterMaxAge() throws Exception {
+        List<BatchFrame> frames = new ArrayList<>();
+        BatchFrameSink sink = new BatchFrameSink(f -> frames.add(BatchFrame.decode(f)), 200, 100);
+        for (NavData d : NavDataPackets.flight(3, 5)) {
+            sink.add(d, 1000);
+        }
+        sink.idle(1050);
+        assertEquals(0, frames.size());
+        sink.idle(1100);
+        assertEquals(1, frames.size());
+        assertEquals(3, frames.get(0).getSize());
+    }
+
+    @Test
+    public void dispatcherFlushesWhenNavdataStops() throws Exception {
+        List<BatchFrame> frames = new ArrayList<>();
+        SinkDispatcher dispatcher = new SinkDispatcher();
+        dispatcher.add("batch", new BatchFrameSink(f -> {
+            synchronized (frames) {
+                frames.add(BatchFrame.decode(f));
+            }
+        }, 200, 50), 16, () -> 0);
+        try {
+            // Receive time is not set, so the samples look old right away
+            for (NavData d : NavDataPackets.flight(3, 6)) {
+                dispatcher.offer(d, System.currentTimeMillis());
+            }
+            long deadline = System.currentTimeMillis() + 5 * SinkDispatcher.IDLE_INTERVAL;
+            while (System.currentTimeMillis() < deadline) {
+                synchronized (frames) {
+                    if (!frames.isEmpty()) {
+                        break;
+                    }
+                }
+                Thread.sleep(10);
+            }
+            synchronized (frames) {
+                assertEquals(1, frames.size());
+                assertEquals(3, frames.get(0).getSize());
+            }
+        } finally {
+            dispatcher.close();
+        }
+    }
+}
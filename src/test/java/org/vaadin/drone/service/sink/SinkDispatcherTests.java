@@ -0,0 +1,104 @@
+package org.vaadin.drone.service.sink;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+import org.vaadin.drone.service.NavData;
+import org.vaadin.drone.service.NavDataPackets;
+import org.vaadin.drone.service.TelemetryField;
+
+public class SinkDispatcherTests {
+
+    @Test
+    public void slowSinkDoesNotBlockOthers() throws Exception {
+        SinkDispatcher dispatcher = new SinkDispatcher();
+        CountDownLatch release = new CountDownLatch(1);
+        List<Long> fast = new ArrayList<>();
+        List<Long> slow = new ArrayList<>();
+        List<Long> thinned = new ArrayList<>();
+        dispatcher.add("fast", d -> {
+            synchronized (fast) {
+                fast.add(d.getSequenceNumber());
+            }
+        }, 1000, () -> 0);
+        dispatcher.add("slow", d -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            synchronized (slow) {
+                slow.add(d.getSequenceNumber());
+            }
+        }, 4, () -> 0);
+        dispatcher.add("thinned", d -> {
+            synchronized (thinned) {
+                thinned.add(d.getSequenceNumber());
+            }
+        }, 1000, () -> 100);
+
+        for (int i = 0; i < 500; i++) {
+            dispatcher.offer(NavDataPackets.demo(i, 1, 75, 1, 2, 3, i, 4, 5, 6), i * 5);
+        }
+        long end = System.currentTimeMillis() + 5000;
+        while (fast.size() < 500 && System.currentTimeMillis() < end) {
+            Thread.sleep(10);
+        }
+        long dropped = dispatcher.getDropped("slow");
+        release.countDown();
+        dispatcher.close();
+
+        assertEquals(500, fast.size());
+        assertEquals(25, thinned.size());
+        // The slow sink got the first sample and then the latest ones
+        assertTrue(slow.size() <= 5);
+        assertEquals(499L, (long) slow.get(slow.size() - 1));
+        assertEquals(500 - slow.size(), dropped);
+    }
+
+    @Test
+    public void binaryRecordRoundTrip() {
+        ByteBuffer buf = ByteBuffer.allocate(TelemetryRecord.SIZE);
+        TelemetryRecord.encode(NavDataPackets.demo(42, 1, 75, 1, 2, 3, 1234, 4, 5, 6), buf);
+        assertEquals(TelemetryRecord.SIZE, buf.position());
+        buf.flip();
+        TelemetryRecord r = TelemetryRecord.decode(buf);
+        assertEquals(42, r.getSequenceNumber());
+        assertEquals(1, r.getStateBits());
+        assertEquals(-1, r.getDroneTime());
+        assertEquals(1234, r.getValue(TelemetryField.ALTITUDE), 0);
+        assertEquals(75, r.getValue(TelemetryField.BATTERY), 0);
+        assertEquals(6, r.getValue(TelemetryField.VZ), 0);
+    }
+
+    @Test
+    public void serverSentEventsAreStreamed() throws Exception {
+        ServerSentEventsSink sink = new ServerSentEventsSink(0, 16);
+        try {
+            HttpURLConnection c = (HttpURLConnection) new URL("http://localhost:" + sink.getPort() + ServerSentEventsSink.PATH).openConnection();
+            c.setReadTimeout(5000);
+            assertEquals("text/event-stream", c.getContentType());
+            long end = System.currentTimeMillis() + 5000;
+            while (sink.getClientCount() == 0 && System.currentTimeMillis() < end) {
+                Thread.sleep(10);
+            }
+            sink.accept(NavDataPackets.demo(7, 1, 75, 1, 2, 3, 500, 4, 5, 6));
+            BufferedReader in = new BufferedReader(new InputStreamReader(c.getInputStream(), StandardCharsets.UTF_8));
+            assertEquals("id: 7", in.readLine());
+            String data = in.readLine();
+            assertTrue(data, data.startsWith("data: {") && data.contains("\"altitude\":500"));
+            c.disconnect();
+        } finally {
+            sink.close();
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package org.vaadin.drone.service.video;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Runs the video stream against a local server streaming PaVE frames.
+ */
+public class VideoStreamTests {
+
+    private static final int I = PaVEHeader.FRAME_TYPE_IDR;
+    private static final int P = PaVEHeader.FRAME_TYPE_P;
+
+    private ServerSocket server;
+    private VideoStream stream;
+
+    @After
+    public void close() throws IOException {
+        if (stream != null) {
+            stream.stop();
+        }
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    @Test
+    public void framesAreSplitAndDelivered() throws Exception {
+        byte[] data = record(new int[]{I, P, P, I, P}, true);
+        serve(data);
+
+        FramePool pool = new FramePool(8, 1024);
+        CollectingSink sink = new CollectingSink(5, 0);
+        stream = new VideoStream(new InetSocketAddress("127.0.0.1", server.getLocalPort()), pool, 8);
+        stream.addSink(sink);
+        stream.start();
+
+        assertTrue(sink.done.await(5, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList(0L, 1L, 2L, 3L, 4L), sink.frameNumbers);
+        assertEquals(I, (int) sink.frameTypes.get(3));
+        for (int i = 0; i < 5; i++) {
+            assertArrayEquals(payload(i), sink.payloads.get(i));
+        }
+        assertEquals(0, stream.getDropped());
+        // All buffers return to the pool
+        Thread.sleep(100);
+        assertEquals(8, pool.getAvailable());
+    }
+
+    @Test
+    public void laggingSinkDropsNonKeyframes() throws Exception {
+        int[] types = new int[40];
+        Arrays.fill(types, P);
+        types[0] = I;
+        types[20] = I;
+        types[39] = I;
+        serve(record(types, false));
+
+        FramePool pool = new FramePool(8, 1024);
+        CollectingSink slow = new CollectingSink(3, 50);
+        stream = new VideoStream(new InetSocketAddress("127.0.0.1", server.getLocalPort()), pool, 2);
+        stream.addSink(slow);
+        stream.start();
+
+        // Slow sink gets the latest keyframe, and never a P-frame without its predecessor
+        assertTrue(slow.await(39, 5000));
+        assertTrue(slow.frameNumbers.size() < 40);
+        synchronized (slow) {
+            for (int i = 0; i < slow.frameNumbers.size(); i++) {
+                if (slow.frameTypes.get(i) == P) {
+                    assertEquals(slow.frameNumbers.get(i) - 1, (long) slow.frameNumbers.get(i - 1));
+                }
+            }
+        }
+    }
+
+    private void serve(byte[] data) throws IOException {
+        server = new ServerSocket(0);
+        Thread t = new Thread(() -> {
+            try (Socket s = server.accept()) {
+                OutputStream out = s.getOutputStream();
+                // Write in odd sized pieces to exercise partial reads
+                for (int i = 0; i < data.length; i += 37) {
+                    out.write(data, i, Math.min(37, data.length - i));
+                    out.flush();
+                }
+                Thread.sleep(5000);
+            } catch (IOException | InterruptedException ignored) {
+            }
+        });
+        t.setDaemon(true);
+        t.start();
+    }
+
+    /* Recorded stream with optional garbage between frames */
+    private static byte[] record(int[] types, boolean garbage) {
+        ByteBuffer b = ByteBuffer.allocate(types.length * 512);
+        PaVEHeader h = new PaVEHeader();
+        for (int i = 0; i < types.length; i++) {
+            byte[] p = payload(i);
+            h.setVersion(3);
+            h.setCodec(4);
+            h.setHeaderSize(PaVEHeader.HEADER_SIZE);
+            h.setPayloadSize(p.length);
+            h.setDisplayWidth(640);
+            h.setDisplayHeight(360);
+            h.setFrameNumber(i);
+            h.setTimestamp(i * 33);
+            h.setFrameType(types[i]);
+            h.write(b);
+            b.put(p);
+            if (garbage && i == 1) {
+                b.put(new byte[]{'P', 'a', 'x', 1, 2, 3});
+            }
+        }
+        return Arrays.copyOf(b.array(), b.position());
+    }
+
+    private static byte[] payload(int frame) {
+        byte[] p = new byte[100 + frame * 10];
+        p[0] = 0;
+        p[1] = 0;
+        p[2] = 0;
+        p[3] = 1;
+        for (int i = 4; i < p.length; i++) {
+            p[i] = (byte) (frame + i);
+        }
+        return p;
+    }
+
+    private static class CollectingSink implements VideoFrameSink {
+
+        private final List<Long> frameNumbers = new ArrayList<>();
+        private final List<Integer> frameTypes = new ArrayList<>();
+        private final List<byte[]> payloads = new ArrayList<>();
+        private final CountDownLatch done;
+        private final long delay;
+
+        private CollectingSink(int frames, long delay) {
+            this.done = new CountDownLatch(frames);
+            this.delay = delay;
+        }
+
+        @Override
+        public void onFrame(VideoFrame frame) {
+            ByteBuffer p = frame.getPayload();
+            byte[] bytes = new byte[p.remaining()];
+            p.get(bytes);
+            synchronized (this) {
+                frameNumbers.add(frame.getFrameNumber());
+                frameTypes.add(frame.getFrameType());
+                payloads.add(bytes);
+                notifyAll();
+            }
+            frame.release();
+            done.countDown();
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException ignored) {
+            }
+        }
+
+        private synchronized boolean await(long frameNumber, long timeout) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + timeout;
+            while (!frameNumbers.contains(frameNumber) && System.currentTimeMillis() < deadline) {
+                wait(100);
+            }
+            return frameNumbers.contains(frameNumber);
+        }
+    }
+}